@@ -0,0 +1,1056 @@
+/**
+ * Class MouseCatElephantBenchmark measures the throughput of parts of the
+ * MouseCatElephant server. Each benchmark runs for a fixed time at several
+ * thread counts after a warm up, and prints operations per second and the
+ * bytes allocated per operation by the threads doing the work.
+ * 
+ * Benchmarks:
+ * <UL>
+ * <LI><TT>join</TT> Joins players through SessionManager.join and quits
+ * them through a decoded 'Q', as the mailbox does, with a lock-free and a
+ * locked matchmaker
+ * <LI><TT>outcome</TT> Resolves rounds with the outcome table and with the
+ * if/else chain it replaced, on fixed and on random choices
+ * <LI><TT>encode</TT> Encodes the messages of a round in ViewProxy, one
+ * datagram each and as one compound datagram
+ * <LI><TT>decode</TT> Decodes choices and new rounds in ViewProxy.process
+ * <LI><TT>round</TT> Plays rounds in a session: two choices, the outcome
+ * and a new round, encoded but not sent
+ * <LI><TT>loopback</TT> Plays rounds from two clients through a mailbox
+ * manager's receive loop, over memory transports with and without metrics
+ * and over UDP on the loopback interface, through sockets and through
+ * channels; allocation is counted on the receive thread
+ * <LI><TT>memory</TT> Measures the memory used per idle session
+ * </UL>
+ * 
+ * The same work is available to the JMH suite in bench/mce through
+ * fixture(), one operation per call. This class is built with the suite,
+ * by the jmh profile in pom.xml, and run from target/benchmarks.jar.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import mce.FixtureSource;
+
+public class MouseCatElephantBenchmark implements FixtureSource
+{
+	private static final long WARMUP_MILLIS = 1000;
+	private static final long RUN_MILLIS = 2000;
+	private static final int[] THREADS = {1, 2, 4, 8, 16};
+	private static final int SESSIONS = 200000;
+	private static final int BATCH = 1000;	// operations between clock reads
+	
+	private static final com.sun.management.ThreadMXBean THREADS_BEAN =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	
+	/** A transport that drops everything sent on it. */
+	/** A view listener that ignores everything. */
+	private static final ViewListener IGNORE = new ViewListener()
+	{
+		public void join(ViewProxy proxy, String name) {}
+		public void selectAnimal(int id, int a) {}
+		public void newRound() {}
+		public void selectBatch(int id, int rounds, byte[] choices) {}
+		public void quit(int i) {}
+	};
+	
+	private static volatile boolean running;
+	private static volatile int sink;		// keeps results from being optimized away
+	
+	/**
+	 * Constructor for the MouseCatElephantBenchmark object, which the JMH
+	 * suite loads as its fixture source.
+	 */
+	public MouseCatElephantBenchmark(){}
+	
+	/**
+	 * Main method for the MouseCatElephantBenchmark.
+	 * 
+	 * @param args			The benchmarks to run; all of them if none are given
+	 */
+	public static void main(String[] args)
+		throws InterruptedException, IOException
+	{
+		if (args.length == 0)
+		{
+			args = new String[] {"join", "outcome", "encode", "decode", "round",
+				"loopback", "memory"};
+		}
+		THREADS_BEAN.setThreadAllocatedMemoryEnabled(true);
+		for (String name : args)
+		{
+			if (name.equals("join"))
+			{
+				benchmarkJoin();
+			} else if (name.equals("outcome"))
+			{
+				benchmarkOutcome();
+			} else if (name.equals("encode"))
+			{
+				benchmarkEncode();
+			} else if (name.equals("decode"))
+			{
+				benchmarkDecode();
+			} else if (name.equals("round"))
+			{
+				benchmarkRound();
+			} else if (name.equals("loopback"))
+			{
+				benchmarkLoopback();
+			} else if (name.equals("memory"))
+			{
+				benchmarkMemory();
+			} else
+				usage();
+		}
+	}
+	
+	/**
+	 * Creates the fixture for one benchmark of the JMH suite in bench/mce.
+	 * JMH does not generate code for benchmarks in the default package, and a
+	 * class in a package cannot name this one, so the suite finds it as a
+	 * FixtureSource service. A fixture is a factory that makes an operation for each
+	 * benchmark thread. Each call of an operation does one unit of work and
+	 * returns a value for the benchmark to consume. The operations from one
+	 * factory share its matchmaker and session manager, which is where their
+	 * threads contend. An operation that owns threads or sockets is also
+	 * Closeable.
+	 * <UL>
+	 * <LI><TT>encode.single</TT>, <TT>encode.compound</TT> The five messages a
+	 * player receives in a round
+	 * <LI><TT>decode.choice</TT>, <TT>decode.round</TT> One 'C' or 'R' through
+	 * ViewProxy.process
+	 * <LI><TT>outcome.table</TT>, <TT>outcome.chain</TT> One round resolved on
+	 * random choices
+	 * <LI><TT>round</TT> One round played in a session
+	 * <LI><TT>join</TT>, <TT>join.locked</TT> One player joined and one quit
+	 * through the shared session manager, with a lock-free and a locked
+	 * matchmaker
+	 * <LI><TT>loopback.memory</TT>, <TT>loopback.udp</TT>,
+	 * <TT>loopback.nio</TT> One round played through a mailbox manager's
+	 * receive loop
+	 * </UL>
+	 * 
+	 * @param  name			The name of the fixture
+	 * @return factory		Makes an operation for each thread, and throws
+	 *						IllegalArgumentException if there is no such
+	 *						fixture
+	 */
+	public Supplier<IntSupplier> fixture(final String name)
+	{
+		final SessionManager manager = new SessionManager(
+			name.equals("join.locked") ? lockedMatchmaker() : new Matchmaker());
+		final AtomicInteger threads = new AtomicInteger();
+		return new Supplier<IntSupplier>()
+		{
+			public IntSupplier get()
+			{
+				try
+				{
+					return operation(name, manager, threads.getAndIncrement());
+				} catch (IOException e)
+				{
+					throw new UncheckedIOException(e);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Creates one operation of a fixture.
+	 * 
+	 * @param  name			The name of the fixture
+	 * @param  manager		The session manager shared by the fixture's
+	 *						operations
+	 * @param  index		The index of the operation within the fixture
+	 * @return operation	The operation
+	 */
+	private static Step operation(String name, SessionManager manager,
+		int index) throws IOException
+	{
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		InetSocketAddress address = new InetSocketAddress(loopback, 1024 + index);
+		if (name.equals("encode.single") || name.equals("encode.compound"))
+		{
+			final ViewProxy proxy = new ViewProxy(Transports.DISCARD, address);
+			final boolean compound = name.equals("encode.compound");
+			proxy.setCompound(compound);
+			return new Step()
+			{
+				protected int step() throws IOException
+				{
+					encodeRound(proxy);
+					if (compound)
+					{
+						proxy.flush();
+					}
+					return 5;
+				}
+			};
+		} else if (name.equals("decode.choice") || name.equals("decode.round"))
+		{
+			final ViewProxy proxy = new ViewProxy(Transports.DISCARD, address);
+			proxy.setViewListener(IGNORE);
+			final byte[] message = name.equals("decode.choice")
+				? new byte[] {'C', 1} : new byte[] {'R'};
+			return new Step()
+			{
+				protected int step() throws IOException
+				{
+					return proxy.process(message, message.length);
+				}
+			};
+		} else if (name.equals("outcome.table") || name.equals("outcome.chain"))
+		{
+			final int[] rounds = randomRounds();
+			final OutcomeTable table = name.equals("outcome.table")
+				? OutcomeTable.STANDARD : null;
+			return new Step()
+			{
+				private int i = 0;
+				
+				protected int step()
+				{
+					int round = rounds[i++ & (rounds.length - 1)];
+					if (table != null)
+						return table.lookup(round >>> 8, round & 0xFF);
+					return chainOutcome(round >>> 8, round & 0xFF);
+				}
+			};
+		} else if (name.equals("round"))
+		{
+			final MouseCatElephantServerState model = playingSession();
+			return new Step()
+			{
+				private int i = 0;
+				
+				protected int step() throws IOException
+				{
+					model.selectAnimal(0, i % 3);
+					model.selectAnimal(1, (i + 1) % 3);
+					model.newRound();
+					i++;
+					return i;
+				}
+			};
+		} else if (name.equals("join") || name.equals("join.locked"))
+		{
+			return new JoinStep(manager, index);
+		} else if (name.equals("loopback.memory"))
+		{
+			MemoryTransport.Network network = new MemoryTransport.Network(1024);
+			return new Loopback(network.open(address), address, network.open(),
+				network.open(), null);
+		} else if (name.equals("loopback.udp"))
+		{
+			DatagramSocket mailbox = new DatagramSocket(new InetSocketAddress(loopback, 0));
+			InetSocketAddress udp = new InetSocketAddress(loopback, mailbox.getLocalPort());
+			return new Loopback(new SocketTransport(mailbox), udp,
+				new SocketTransport(new DatagramSocket()),
+				new SocketTransport(new DatagramSocket()), null);
+		} else if (name.equals("loopback.nio"))
+		{
+			DatagramChannel channel = DatagramChannel.open()
+				.bind(new InetSocketAddress(loopback, 0));
+			return new Loopback(new ChannelTransport(channel),
+				channel.getLocalAddress(), channelTransport(), channelTransport(),
+				null);
+		} else
+			throw new IllegalArgumentException("No such fixture: " + name);
+	}
+	
+	/**
+	 * Benchmarks joining and quitting sessions under contention.
+	 */
+	private static void benchmarkJoin() throws InterruptedException
+	{
+		for (int threads : THREADS)
+		{
+			SessionManager free = new SessionManager();
+			SessionManager locked = new SessionManager(lockedMatchmaker());
+			Worker[] freeWorkers = new Worker[threads];
+			Worker[] lockedWorkers = new Worker[threads];
+			for (int i = 0; i < threads; i++)
+			{
+				freeWorkers[i] = new Worker(new JoinStep(free, i));
+				lockedWorkers[i] = new Worker(new JoinStep(locked, i));
+			}
+			run("join lock-free", freeWorkers);
+			run("join locked", lockedWorkers);
+		}
+	}
+	
+	/**
+	 * Creates a matchmaker whose every operation takes its lock, to compare
+	 * with the lock-free one.
+	 */
+	private static Matchmaker lockedMatchmaker()
+	{
+		return new Matchmaker()
+		{
+			public synchronized MouseCatElephantServerState peek()
+			{
+				return super.peek();
+			}
+			
+			public synchronized boolean offer(MouseCatElephantServerState model)
+			{
+				return super.offer(model);
+			}
+			
+			public synchronized boolean take(MouseCatElephantServerState model)
+			{
+				return super.take(model);
+			}
+		};
+	}
+	
+	/**
+	 * Runs worker threads for a fixed time after a warm up and reports the
+	 * operations they completed.
+	 * 
+	 * @param  name			The name of the benchmark
+	 * @param  workers		The threads, not yet started
+	 */
+	private static void run(String name, Worker[] workers)
+		throws InterruptedException
+	{
+		running = true;
+		for (Worker worker : workers)
+		{
+			worker.start();
+		}
+		Thread.sleep(WARMUP_MILLIS);
+		long start = System.nanoTime();
+		long before = 0;
+		long allocatedBefore = allocated(workers);
+		for (Worker worker : workers)
+		{
+			before += worker.count;
+		}
+		Thread.sleep(RUN_MILLIS);
+		long after = 0;
+		long allocatedAfter = allocated(workers);
+		for (Worker worker : workers)
+		{
+			after += worker.count;
+		}
+		long elapsed = System.nanoTime() - start;
+		running = false;
+		for (Worker worker : workers)
+		{
+			worker.join();
+		}
+		report(name, workers.length, (after - before) * 1e9 / elapsed,
+			(double) (allocatedAfter - allocatedBefore) / (after - before));
+	}
+	
+	/**
+	 * Runs an operation on this thread for a fixed time after a warm up and
+	 * reports how often it ran.
+	 * 
+	 * @param  name			The name of the benchmark
+	 * @param  operation	The operation
+	 * @param  allocator	The thread whose allocations are counted
+	 */
+	private static void measure(String name, Operation operation, Thread allocator)
+		throws IOException
+	{
+		long count = 0;
+		long start = System.nanoTime();
+		long warm = start + WARMUP_MILLIS * 1000000L;
+		long end = warm + RUN_MILLIS * 1000000L;
+		long now = start;
+		long allocatedStart = 0;
+		while (now < end)
+		{
+			int ops = operation.run();
+			now = System.nanoTime();
+			if (now < warm)
+			{
+				start = now;
+				allocatedStart = allocated(allocator);
+			} else
+				count += ops;
+		}
+		report(name, 1, count * 1e9 / (now - start),
+			(double) (allocated(allocator) - allocatedStart) / count);
+	}
+	
+	/**
+	 * Benchmarks round resolution. A resolver that branches on the choices
+	 * slows down on random choices, where its branches cannot be predicted;
+	 * the table runs at the same speed on fixed and on random choices.
+	 */
+	private static void benchmarkOutcome() throws IOException
+	{
+		int[] fixed = new int[4096];
+		int[] mixed = randomRounds();
+		for (int i = 0; i < fixed.length; i++)
+		{
+			fixed[i] = 1 << 8 | 2;		// cat vs elephant
+		}
+		
+		Thread self = Thread.currentThread();
+		measure("outcome table fixed", resolve(fixed, OutcomeTable.STANDARD), self);
+		measure("outcome table random", resolve(mixed, OutcomeTable.STANDARD), self);
+		measure("outcome chain fixed", resolve(fixed, null), self);
+		measure("outcome chain random", resolve(mixed, null), self);
+	}
+	
+	/**
+	 * Creates 4096 rounds of random choices, each p1Choice << 8 | p2Choice.
+	 */
+	private static int[] randomRounds()
+	{
+		Random random = new Random(1);
+		int[] rounds = new int[4096];
+		for (int i = 0; i < rounds.length; i++)
+		{
+			rounds[i] = random.nextInt(3) << 8 | random.nextInt(3);
+		}
+		return rounds;
+	}
+	
+	/**
+	 * Creates an operation that resolves a set of rounds.
+	 * 
+	 * @param  rounds		The choices for each round, p1Choice << 8 | p2Choice
+	 * @param  table		The outcome table, or null to use the if/else chain
+	 * @return operation	The operation
+	 */
+	private static Operation resolve(final int[] rounds, final OutcomeTable table)
+	{
+		return new Operation()
+		{
+			public int run()
+			{
+				int result = 0;
+				for (int i = 0; i < rounds.length; i++)
+				{
+					int p1Choice = rounds[i] >>> 8;
+					int p2Choice = rounds[i] & 0xFF;
+					if (table != null)
+					{
+						result += table.lookup(p1Choice, p2Choice);
+					} else
+						result += chainOutcome(p1Choice, p2Choice);
+				}
+				sink = result;
+				return rounds.length;
+			}
+		};
+	}
+	
+	/**
+	 * Resolves a round with the if/else chain that the outcome table
+	 * replaced, packed the same way as a table entry.
+	 */
+	private static int chainOutcome(int p1Choice, int p2Choice)
+	{
+		int animal1 = 0, animal2 = 0, vs = 0;
+		int score = 0;
+		
+		if (p1Choice == p2Choice)	//check for ties
+		{
+			animal1 = p1Choice;
+			animal2 = p2Choice;
+		} else if (p1Choice == 0 && p2Choice == 1) //mouse vs cat
+		{
+			animal1 = 1;
+			vs = 2;
+			animal2 = 0;
+			score = 2;
+		} else if (p1Choice == 0 && p2Choice == 2) //mouse vs elephant
+		{
+			animal1 = 0;
+			vs = 1;
+			animal2 = 2;
+			score = 1;
+		} else if (p1Choice == 1 && p2Choice == 0) //cat vs mouse
+		{
+			animal1 = 1;
+			vs = 2;
+			animal2 = 0;
+			score = 1;
+		} else if (p1Choice == 1 && p2Choice == 2) //cat vs elephant
+		{
+			animal1 = 2;
+			vs = 3;
+			animal2 = 1;
+			score = 2;
+		} else if (p1Choice == 2 && p2Choice == 0) //elephant vs mouse
+		{
+			animal1 = 0;
+			vs = 1;
+			animal2 = 2;
+			score = 2;
+		} else //elephant vs cat
+		{
+			animal1 = 2;
+			vs = 3;
+			animal2 = 1;
+			score = 1;
+		}
+		return animal1 | vs << 8 | animal2 << 16 | score << 24;
+	}
+	
+	/**
+	 * Benchmarks encoding the messages of a round: both choices, the
+	 * outcome, a score and the new round.
+	 */
+	private static void benchmarkEncode() throws IOException
+	{
+		final ViewProxy single = new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(InetAddress.getLoopbackAddress(), 1024));
+		final ViewProxy compound = new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(InetAddress.getLoopbackAddress(), 1025));
+		compound.setCompound(true);
+		
+		measure("encode single", new Operation()
+		{
+			public int run() throws IOException
+			{
+				for (int i = 0; i < BATCH; i++)
+				{
+					encodeRound(single);
+				}
+				return BATCH * 5;
+			}
+		}, Thread.currentThread());
+		measure("encode compound", new Operation()
+		{
+			public int run() throws IOException
+			{
+				for (int i = 0; i < BATCH; i++)
+				{
+					encodeRound(compound);
+					compound.flush();
+				}
+				return BATCH * 5;
+			}
+		}, Thread.currentThread());
+	}
+	
+	/**
+	 * Encodes the five messages a player receives in a round.
+	 */
+	private static void encodeRound(ViewProxy proxy) throws IOException
+	{
+		proxy.animalSelected(0, 1);
+		proxy.animalSelected(1, 2);
+		proxy.reportOutcome(2, 3, 1);
+		proxy.reportScore(1, 7);
+		proxy.newRoundSelected();
+	}
+	
+	/**
+	 * Benchmarks decoding choices and new rounds.
+	 */
+	private static void benchmarkDecode() throws IOException
+	{
+		final ViewProxy proxy = new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(InetAddress.getLoopbackAddress(), 1024));
+		proxy.setViewListener(IGNORE);
+		final byte[] choice = {'C', 1};
+		final byte[] round = {'R'};
+		
+		measure("decode", new Operation()
+		{
+			public int run() throws IOException
+			{
+				for (int i = 0; i < BATCH; i++)
+				{
+					proxy.process(choice, choice.length);
+					proxy.process(round, round.length);
+				}
+				return BATCH * 2;
+			}
+		}, Thread.currentThread());
+	}
+	
+	/**
+	 * Benchmarks playing rounds in one session, with the replies encoded for
+	 * both players and then dropped.
+	 */
+	private static void benchmarkRound() throws IOException
+	{
+		final MouseCatElephantServerState model = playingSession();
+		measure("round", new Operation()
+		{
+			public int run() throws IOException
+			{
+				for (int i = 0; i < BATCH; i++)
+				{
+					model.selectAnimal(0, i % 3);
+					model.selectAnimal(1, (i + 1) % 3);
+					model.newRound();
+				}
+				return BATCH;
+			}
+		}, Thread.currentThread());
+	}
+	
+	/**
+	 * Creates a session with both players joined, whose replies are encoded
+	 * and then dropped.
+	 */
+	private static MouseCatElephantServerState playingSession()
+		throws IOException
+	{
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		ViewProxy p1 = new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(loopback, 1024));
+		ViewProxy p2 = new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(loopback, 1025));
+		MouseCatElephantServerState model = new MouseCatElephantServerState(1);
+		model.addModelListener(p1);
+		model.addModelListener(p2);
+		p2.setPlayerInfo(1, null);
+		model.join(p1, "p1");
+		model.join(p2, "p2");
+		return model;
+	}
+	
+	/**
+	 * Benchmarks rounds played through a mailbox manager's receive loop.
+	 */
+	private static void benchmarkLoopback() throws IOException
+	{
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		
+		MemoryTransport.Network network = new MemoryTransport.Network(1024);
+		InetSocketAddress memory = new InetSocketAddress(loopback, 1024);
+		loopback("loopback memory", network.open(memory), memory,
+			network.open(), network.open(), null);
+		
+		InetSocketAddress metered = new InetSocketAddress(loopback, 1025);
+		loopback("loopback metrics", network.open(metered), metered,
+			network.open(), network.open(), new Metrics());
+		
+		DatagramSocket mailbox = new DatagramSocket(new InetSocketAddress(loopback, 0));
+		InetSocketAddress udp = new InetSocketAddress(loopback, mailbox.getLocalPort());
+		loopback("loopback udp", new SocketTransport(mailbox), udp,
+			new SocketTransport(new DatagramSocket()),
+			new SocketTransport(new DatagramSocket()), null);
+		
+		DatagramChannel channel = DatagramChannel.open()
+			.bind(new InetSocketAddress(loopback, 0));
+		loopback("loopback nio", new ChannelTransport(channel),
+			channel.getLocalAddress(), channelTransport(), channelTransport(), null);
+	}
+	
+	/**
+	 * Opens a channel transport on the loopback interface, for a client.
+	 * 
+	 * @return transport	The transport
+	 * 
+	 * @throws IOException	Thrown if an I/O error occurred
+	 */
+	private static Transport channelTransport() throws IOException
+	{
+		return new ChannelTransport(DatagramChannel.open()
+			.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)));
+	}
+	
+	/**
+	 * Serves one session from a receive thread and plays rounds against it
+	 * from two clients on this thread.
+	 * 
+	 * @param  name			The name of the benchmark
+	 * @param  server		The transport the mailbox manager receives on
+	 * @param  address		The address of the server transport
+	 * @param  p1			The transport of player 1
+	 * @param  p2			The transport of player 2
+	 * @param  metrics		The metrics the server counts in, or null
+	 */
+	private static void loopback(String name, Transport server,
+		SocketAddress address, Transport p1, Transport p2, Metrics metrics)
+		throws IOException
+	{
+		final Loopback loopback = new Loopback(server, address, p1, p2, metrics);
+		measure(name, new Operation()
+		{
+			public int run() throws IOException
+			{
+				for (int i = 0; i < BATCH / 10; i++)
+				{
+					loopback.step();
+				}
+				return BATCH / 10;
+			}
+		}, loopback.receiver);
+		loopback.close();
+	}
+	
+	/**
+	 * Joins a client to the server with the cookie handshake.
+	 */
+	private static void join(Transport client, SocketAddress address,
+		DatagramPacket packet) throws IOException
+	{
+		client.send(joinPacket(0, address));
+		await(client, packet, 'K');
+		long cookie = 0;
+		for (int i = 1; i <= 8; i++)
+		{
+			cookie = cookie << 8 | (packet.getData()[i] & 0xFF);
+		}
+		client.send(joinPacket(cookie, address));
+		await(client, packet, 'I');
+	}
+	
+	/**
+	 * Builds a join datagram.
+	 */
+	private static DatagramPacket joinPacket(long cookie, SocketAddress address)
+		throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeByte('J');
+		out.writeLong(cookie);
+		out.writeUTF("bench");
+		out.close();
+		byte[] payload = baos.toByteArray();
+		return new DatagramPacket(payload, payload.length, address);
+	}
+	
+	/**
+	 * Receives datagrams until one starts with the given message type.
+	 * 
+	 * @throws IOException		Thrown if nothing arrives for a second
+	 */
+	private static void await(Transport client, DatagramPacket packet, char type)
+		throws IOException
+	{
+		do
+		{
+			if (!client.receive(packet, 1000))
+				throw new IOException("Timed out waiting for '" + type + "'");
+		} while (packet.getData()[0] != type);
+	}
+	
+	/**
+	 * Benchmarks the memory used by idle sessions: two players joined, no
+	 * messages in flight. Player names are not counted.
+	 */
+	private static void benchmarkMemory() throws IOException
+	{
+		Transport transport = new MemoryTransport.Network(1).open();
+		System.out.printf("%-20s %,10d sessions %,6d heap bytes%n", "memory",
+			SESSIONS, createSessions(transport));
+		transport.close();
+	}
+	
+	/**
+	 * Creates idle sessions and measures the heap they use.
+	 * 
+	 * @param  transport	The transport the proxies reply through
+	 * @return bytes		The heap used per session
+	 */
+	private static long createSessions(Transport transport)
+		throws IOException
+	{
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		MouseCatElephantServerState[] live =
+			new MouseCatElephantServerState[SESSIONS];
+		long before = usedHeap();
+		for (int i = 0; i < SESSIONS; i++)
+		{
+			live[i] = new MouseCatElephantServerState(i + 1);
+			for (int player = 0; player < 2; player++)
+			{
+				ViewProxy proxy = new ViewProxy(transport,
+					new InetSocketAddress(loopback, 1024 + (2*i + player) % 60000));
+				proxy.setViewListener(live[i]);
+				proxy.setSession(i + 1);
+				live[i].addModelListener(proxy);
+			}
+		}
+		long used = usedHeap() - before;
+		sink = live[SESSIONS - 1].getSession();
+		return used / SESSIONS;
+	}
+	
+	/**
+	 * Gets the heap in use after collecting garbage.
+	 */
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++)
+		{
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+	
+	/**
+	 * Gets the bytes allocated so far by some threads.
+	 */
+	private static long allocated(Thread... threads)
+	{
+		long bytes = 0;
+		for (Thread thread : threads)
+		{
+			bytes += THREADS_BEAN.getThreadAllocatedBytes(thread.getId());
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Prints one result.
+	 */
+	private static void report(String name, int threads, double ops, double bytes)
+	{
+		System.out.printf("%-20s %3d threads %,15.0f ops/s %,10.1f B/op%n", name,
+			threads, ops, bytes);
+	}
+	
+	/**
+	 * Displays a usage message and exits the program.
+	 */
+	private static void usage()
+	{
+		System.err.println("Usage: java -cp target/benchmarks.jar MouseCatElephantBenchmark"
+			+ " [join] [outcome] [encode] [decode] [round] [loopback] [memory]");
+		System.exit(1);
+	}
+	
+	/**
+	 * Interface Operation is a batch of work timed by measure().
+	 */
+	private interface Operation
+	{
+		/**
+		 * Runs the batch.
+		 * 
+		 * @return ops				The number of operations in the batch
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		public int run() throws IOException;
+	}
+	
+	/**
+	 * Class Step is one operation of a benchmark, which the JMH suite calls
+	 * through IntSupplier.
+	 */
+	private static abstract class Step implements IntSupplier
+	{
+		/**
+		 * Runs the operation.
+		 * 
+		 * @return result			A value that depends on the work done
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		protected abstract int step() throws IOException;
+		
+		/**
+		 * Runs the operation, for callers that cannot take an IOException.
+		 * 
+		 * @return result			A value that depends on the work done
+		 */
+		public int getAsInt()
+		{
+			try
+			{
+				return step();
+			} catch (IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	/**
+	 * Class Worker is a thread that repeats a step and counts the steps it
+	 * completes.
+	 */
+	private static class Worker extends Thread
+	{
+		private Step step;
+		private volatile long count;
+		
+		/**
+		 * Constructor for the Worker object.
+		 * 
+		 * @param step			The step to repeat
+		 */
+		public Worker(Step step)
+		{
+			this.step = step;
+		}
+		
+		/**
+		 * Repeats the step until the benchmark stops.
+		 */
+		public void run()
+		{
+			long steps = 0;
+			try
+			{
+				while (running)
+				{
+					step.step();
+					count = ++steps;
+				}
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Class JoinStep joins one player through a session manager, and quits
+	 * the player it joined last time, so that some of its sessions are taken
+	 * by other threads in between.
+	 */
+	private static class JoinStep extends Step
+	{
+		private static final byte[] QUIT = { 'Q' };
+		
+		private SessionManager manager;
+		private InetSocketAddress address;
+		private ViewProxy previous;
+		
+		/**
+		 * Constructor for the JoinStep object.
+		 * 
+		 * @param manager		The session manager shared by all threads
+		 * @param index			The index of this thread
+		 */
+		public JoinStep(SessionManager manager, int index)
+		{
+			this.manager = manager;
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+				1024 + index);
+		}
+		
+		/**
+		 * Joins a player and quits the previous one.
+		 */
+		protected int step() throws IOException
+		{
+			ViewProxy proxy = new ViewProxy(Transports.DISCARD, address);
+			manager.join(proxy, "bench");
+			if (previous != null)
+			{
+				manager.endSession(previous.process(QUIT, QUIT.length), previous);
+			}
+			previous = proxy;
+			return 1;
+		}
+	}
+	
+	/**
+	 * Class Loopback serves one session from a mailbox manager on a receive
+	 * thread, and plays a round against it from two clients on each step.
+	 */
+	private static class Loopback extends Step implements Closeable
+	{
+		private Transport server, p1, p2;
+		private Thread receiver;
+		private DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+		private SocketAddress address;
+		private byte[] choice1 = {'C', 0};
+		private byte[] choice2 = {'C', 1};
+		private byte[] round = {'R'};
+		
+		/**
+		 * Constructor for the Loopback object. Starts the receive thread and
+		 * joins both players.
+		 * 
+		 * @param server		The transport the mailbox manager receives on
+		 * @param address		The address of the server transport
+		 * @param p1			The transport of player 1
+		 * @param p2			The transport of player 2
+		 * @param metrics		The metrics the server counts in, or null
+		 * 
+		 * @throws IOException	Thrown if the players could not join
+		 */
+		public Loopback(Transport server, SocketAddress address, Transport p1,
+			Transport p2, Metrics metrics) throws IOException
+		{
+			this.p1 = p1;
+			this.p2 = p2;
+			SessionManager sessionManager = new SessionManager();
+			if (metrics != null)
+			{
+				server = new MeteredTransport(server, metrics);
+				sessionManager.setMetrics(metrics);
+			}
+			this.server = server;
+			final MailboxManager manager = new MailboxManager(server);
+			manager.setSessionManager(sessionManager);
+			manager.setMetrics(metrics);
+			receiver = new Thread("Benchmark receiver")
+			{
+				public void run()
+				{
+					try
+					{
+						for (;;)
+						{
+							manager.receiveMessage();
+						}
+					} catch (IOException e) {}		// the transport was closed
+				}
+			};
+			receiver.setDaemon(true);
+			receiver.start();
+			
+			join(p1, address, packet);
+			join(p2, address, packet);
+			await(p1, packet, 'R');
+			await(p2, packet, 'R');
+			this.address = address;
+		}
+		
+		/**
+		 * Plays one round: both choices, the outcome to both players and a
+		 * new round.
+		 */
+		protected int step() throws IOException
+		{
+			p1.send(choice1, 0, choice1.length, address);
+			p2.send(choice2, 0, choice2.length, address);
+			await(p1, packet, 'O');
+			await(p2, packet, 'O');
+			p1.send(round, 0, round.length, address);
+			await(p1, packet, 'R');
+			await(p2, packet, 'R');
+			return packet.getLength();
+		}
+		
+		/**
+		 * Closes the transports, which stops the receive thread.
+		 */
+		public void close()
+		{
+			p1.close();
+			p2.close();
+			server.close();
+		}
+	}
+}
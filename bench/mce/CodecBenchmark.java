@@ -0,0 +1,60 @@
+/**
+ * Class CodecBenchmark times ViewProxy's encoders and its decoder. The
+ * encode fixtures send the five messages a player receives in a round, one
+ * datagram each or as one compound datagram, to a transport that drops
+ * them. The decode fixtures run one 'C' or one 'R' through
+ * ViewProxy.process. Run with -prof gc to see that none of them allocate.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+package mce;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark
+{
+	@Param({"encode.single", "encode.compound", "decode.choice", "decode.round"})
+	public String fixture;
+	
+	private IntSupplier operation;
+	
+	@Setup
+	public void setup()
+	{
+		operation = Fixtures.operation(fixture);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Fixtures.close(operation);
+	}
+	
+	@Benchmark
+	public int codec()
+	{
+		return operation.getAsInt();
+	}
+}
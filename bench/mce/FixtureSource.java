@@ -0,0 +1,30 @@
+/**
+ * Interface FixtureSource is implemented by the class that builds the
+ * benchmark fixtures from the game's classes. Those classes live in the
+ * default package, which this package cannot name, so the source is found
+ * through java.util.ServiceLoader; see META-INF/services in bench/.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+package mce;
+
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+public interface FixtureSource
+{
+	/**
+	 * Creates a fixture: a factory that makes one operation per benchmark
+	 * thread. Each call of an operation does one unit of work and returns a
+	 * value for the benchmark to consume. An operation that owns threads or
+	 * sockets is also Closeable.
+	 * 
+	 * @param  name				The name of the fixture
+	 * @return factory			The factory
+	 * 
+	 * @throws IllegalArgumentException		Thrown if there is no such fixture
+	 */
+	public Supplier<IntSupplier> fixture(String name);
+}
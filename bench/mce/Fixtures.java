@@ -0,0 +1,73 @@
+/**
+ * Class Fixtures fetches the benchmark fixtures from the FixtureSource
+ * service, MouseCatElephantBenchmark. JMH refuses to generate code for
+ * benchmarks in the default package, where the game's classes live, and a
+ * class in a package cannot name a class in the default package. So each
+ * benchmark looks its fixture up by name once, during setup, and calls it
+ * through java.util.function.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+package mce;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ServiceLoader;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+final class Fixtures
+{
+	/**
+	 * Fixtures only has static methods.
+	 */
+	private Fixtures()
+	{
+	}
+	
+	/**
+	 * Gets the factory of a fixture, which makes one operation per thread.
+	 * 
+	 * @param  name				The name of the fixture
+	 * @return factory			The factory
+	 * 
+	 * @throws IllegalStateException		Thrown if no fixture source is on
+	 *										the class path
+	 */
+	static Supplier<IntSupplier> factory(String name)
+	{
+		for (FixtureSource source : ServiceLoader.load(FixtureSource.class))
+		{
+			return source.fixture(name);
+		}
+		throw new IllegalStateException("No fixture source on the class path");
+	}
+	
+	/**
+	 * Makes one operation of a fixture.
+	 * 
+	 * @param  name				The name of the fixture
+	 * @return operation		The operation
+	 */
+	static IntSupplier operation(String name)
+	{
+		return factory(name).get();
+	}
+	
+	/**
+	 * Releases the threads and sockets of an operation, if it has any.
+	 * 
+	 * @param  operation		The operation
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	static void close(IntSupplier operation) throws IOException
+	{
+		if (operation instanceof Closeable)
+		{
+			((Closeable) operation).close();
+		}
+	}
+}
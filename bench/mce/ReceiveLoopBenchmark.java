@@ -0,0 +1,62 @@
+/**
+ * Class ReceiveLoopBenchmark times whole rounds through a mailbox manager.
+ * A receive thread runs MailboxManager.receiveMessage, and the benchmark
+ * thread plays both clients: both choices, the outcome to each, and a new
+ * round to each. The memory fixture connects them through memory
+ * transports, the udp fixture through sockets on the loopback interface,
+ * and the nio fixture through datagram channels there. The gc profiler
+ * counts the receive thread's allocations too.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+package mce;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiveLoopBenchmark
+{
+	@Param({"loopback.memory", "loopback.udp", "loopback.nio"})
+	public String fixture;
+	
+	private IntSupplier operation;
+	
+	@Setup
+	public void setup()
+	{
+		operation = Fixtures.operation(fixture);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Fixtures.close(operation);
+	}
+	
+	@Benchmark
+	public int round()
+	{
+		return operation.getAsInt();
+	}
+}
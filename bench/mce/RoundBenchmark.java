@@ -0,0 +1,62 @@
+/**
+ * Class RoundBenchmark times resolving rounds. The outcome fixtures resolve
+ * one round on random choices with the outcome table and with the if/else
+ * chain it replaced; a chain that branches on the choices pays for each
+ * mispredicted branch, and the table does not. The round fixture plays a
+ * whole round in a session: two choices, the outcome and a new round, with
+ * the replies encoded and dropped. Run with -prof perfnorm, where perf is
+ * available, to count the branches and branch misses per round.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+package mce;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundBenchmark
+{
+	@Param({"outcome.table", "outcome.chain", "round"})
+	public String fixture;
+	
+	private IntSupplier operation;
+	
+	@Setup
+	public void setup()
+	{
+		operation = Fixtures.operation(fixture);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		Fixtures.close(operation);
+	}
+	
+	@Benchmark
+	public int resolve()
+	{
+		return operation.getAsInt();
+	}
+}
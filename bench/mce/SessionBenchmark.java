@@ -0,0 +1,85 @@
+/**
+ * Class SessionBenchmark times joining and quitting under contention. All
+ * threads share one fixture, which joins a player through one session
+ * manager's SessionManager.join and quits the player it joined before: the
+ * join fixture pairs players through the lock-free matchmaker, and the
+ * join.locked fixture through one that takes a lock. Runs on four threads;
+ * use -t to change that.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+package mce;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SessionBenchmark
+{
+	/**
+	 * Class Shared holds the fixture that every thread contends on.
+	 */
+	@State(Scope.Benchmark)
+	public static class Shared
+	{
+		@Param({"join", "join.locked"})
+		public String fixture;
+		
+		private Supplier<IntSupplier> factory;
+		
+		@Setup
+		public void setup()
+		{
+			factory = Fixtures.factory(fixture);
+		}
+	}
+	
+	/**
+	 * Class Player holds one thread's operation on the shared fixture.
+	 */
+	@State(Scope.Thread)
+	public static class Player
+	{
+		private IntSupplier operation;
+		
+		@Setup
+		public void setup(Shared shared)
+		{
+			operation = shared.factory.get();
+		}
+		
+		@TearDown
+		public void tearDown() throws IOException
+		{
+			Fixtures.close(operation);
+		}
+	}
+	
+	@Benchmark
+	public int contend(Player player)
+	{
+		return player.operation.getAsInt();
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * Class Transports holds the stand-in transports shared by the tests in
+ * test/ and the benchmarks in bench/. The build adds fixtures/ to the test
+ * sources, and under the jmh profile to the benchmark sources; it is never
+ * part of the game's own jar.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+
+public class Transports
+{
+	/**
+	 * A transport that drops every datagram sent on it and never receives
+	 * one, for proxies whose replies nobody reads.
+	 */
+	public static final Transport DISCARD = new Transport()
+	{
+		public void send(DatagramPacket packet) {}
+		public void send(byte[] data, int offset, int length, SocketAddress address) {}
+		public boolean receive(DatagramPacket packet, int timeout) { return false; }
+		public SocketAddress getLocalAddress() { return null; }
+		public void close() {}
+	};
+	
+	/**
+	 * Transports only holds the shared transports.
+	 */
+	private Transports()
+	{
+	}
+}
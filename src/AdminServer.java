@@ -0,0 +1,365 @@
+/**
+ * Class AdminServer answers operators' questions about a running
+ * MouseCatElephant server on a local TCP port. A client sends one command
+ * per line and gets back lines of text ending with an empty line:
+ * <UL>
+ * <LI><TT>stats</TT> Counts of sessions, waiting players and connections,
+ * and the totals from the metrics if there are any
+ * <LI><TT>sessions</TT> One line per open session: its id, then the name and
+ * score of each player, separated by tabs
+ * <LI><TT>session &lt;id&gt;</TT> The players and scores of one session
+ * <LI><TT>drain</TT> Turn away new players with a busy reply, while the
+ * players already in sessions play on
+ * <LI><TT>resume</TT> Admit new players again
+ * <LI><TT>quit</TT> Close the connection
+ * </UL>
+ * Player names are written with '%' and control characters, such as tab
+ * and newline, percent-encoded as their UTF-8 bytes, so a name cannot
+ * break a line or a column. A name not known yet is written as "-", and a
+ * player named "-" as "%2D".
+ * 
+ * Queries are answered from a ServerSnapshot, which a daemon thread takes
+ * once a second, so answering one never waits on a session or holds up a
+ * receive thread. Connections are accepted only on the loopback interface,
+ * and up to eight are served at once, each on a daemon thread of its own,
+ * so a client that goes quiet holds up nobody else. Any more are told so
+ * and closed.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+
+public class AdminServer implements Runnable
+{
+	private static final int PUBLISH_MILLIS = 1000;		// how often to take a snapshot
+	private static final int IDLE_MILLIS = 60000;		// how long to wait for a command
+	private static final int MAX_CLIENTS = 8;			// connections served at once
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	
+	private SessionManager[] shards;
+	private MailboxManager[] managers;
+	private Metrics metrics;
+	private ServerSocket listener;
+	private volatile ServerSnapshot snapshot;
+	private Semaphore clients = new Semaphore(MAX_CLIENTS);
+	
+	/**
+	 * Constructor for the AdminServer object. Listens on the loopback
+	 * address only.
+	 * 
+	 * @param shards			The session managers of all shards
+	 * @param managers			The mailbox managers of all shards
+	 * @param port				The port
+	 * 
+	 * @throws IOException		Thrown if the port could not be bound
+	 */
+	public AdminServer(SessionManager[] shards, MailboxManager[] managers,
+		int port) throws IOException
+	{
+		this.shards = shards;
+		this.managers = managers;
+		listener = new ServerSocket();
+		listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+	
+	/**
+	 * Adds the totals from the given metrics to the stats.
+	 * 
+	 * @param metrics			The metrics
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Takes the first snapshot, then starts taking snapshots and serving
+	 * connections on daemon threads.
+	 */
+	public void start()
+	{
+		publish();
+		Thread publisher = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					for(;;)
+					{
+						Thread.sleep(PUBLISH_MILLIS);
+						publish();
+					}
+				} catch (InterruptedException e) {}
+			}
+		}, "Admin snapshots");
+		publisher.setDaemon(true);
+		publisher.start();
+		
+		Thread thread = new Thread(this, "Admin server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Accepts connections until the listener is closed, starting a thread
+	 * to serve each.
+	 */
+	public void run()
+	{
+		while (!listener.isClosed())
+		{
+			final Socket socket;
+			try
+			{
+				socket = listener.accept();
+			} catch (IOException e)
+			{
+				if (!listener.isClosed())
+					e.printStackTrace();
+				continue;
+			}
+			
+			if (!clients.tryAcquire())
+			{
+				refuse(socket);
+				continue;
+			}
+			Thread thread = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try (Socket client = socket)
+					{
+						serve(client);
+					} catch (IOException e)
+					{
+						e.printStackTrace();
+					} finally
+					{
+						clients.release();
+					}
+				}
+			}, "Admin client " + socket.getPort());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+	
+	/**
+	 * Closes the listener.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void close() throws IOException
+	{
+		listener.close();
+	}
+	
+	/**
+	 * Takes a snapshot of the server and makes it the one queries are
+	 * answered from.
+	 */
+	private void publish()
+	{
+		snapshot = ServerSnapshot.take(shards, managers);
+	}
+	
+	/**
+	 * Answers commands until the client quits, goes quiet or disconnects.
+	 */
+	private void serve(Socket socket) throws IOException
+	{
+		socket.setSoTimeout(IDLE_MILLIS);
+		BufferedReader in = new BufferedReader(
+			new InputStreamReader(socket.getInputStream(), "UTF-8"));
+		PrintWriter out = new PrintWriter(
+			new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+		try
+		{
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				String[] words = line.trim().split("\\s+");
+				if (words[0].equals("quit"))
+					return;
+				
+				execute(words, out);
+				out.print("\n");
+				out.flush();
+			}
+		} catch (SocketTimeoutException e) {}	// idle; make room for another client
+	}
+	
+	/**
+	 * Tells a client that too many others are connected, and closes its
+	 * connection.
+	 */
+	private static void refuse(Socket socket)
+	{
+		try (Socket client = socket)
+		{
+			client.getOutputStream().write(
+				"error too many connections\n\n".getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {}	// it is being turned away anyway
+	}
+	
+	/**
+	 * Executes one command.
+	 */
+	private void execute(String[] words, PrintWriter out)
+	{
+		String command = words[0];
+		if (command.equals("stats") && words.length == 1)
+		{
+			stats(out);
+		} else if (command.equals("sessions") && words.length == 1)
+		{
+			sessions(out);
+		} else if (command.equals("session") && words.length == 2)
+		{
+			session(words[1], out);
+		} else if (command.equals("drain") && words.length == 1)
+		{
+			drain(true, out);
+		} else if (command.equals("resume") && words.length == 1)
+		{
+			drain(false, out);
+		} else
+			out.print("error unknown command; try stats, sessions, session <id>,"
+				+ " drain, resume or quit\n");
+	}
+	
+	/**
+	 * Writes the counts from the latest snapshot, and the metric totals.
+	 */
+	private void stats(PrintWriter out)
+	{
+		ServerSnapshot current = snapshot;
+		out.print("age_millis " + (System.currentTimeMillis() - current.getTime()) + "\n");
+		out.print("sessions " + current.getSessionCount() + "\n");
+		out.print("waiting " + current.getWaiting() + "\n");
+		out.print("connections " + current.getConnections() + "\n");
+		out.print("draining " + current.isDraining() + "\n");
+		if (metrics != null)
+		{
+			out.print("joins " + metrics.getJoins() + "\n");
+			out.print("quits " + metrics.getQuits() + "\n");
+			out.print("expired " + metrics.getExpired() + "\n");
+			out.print("busy " + metrics.getBusy() + "\n");
+			out.print("rounds " + metrics.getRounds() + "\n");
+			out.print("datagrams_in " + metrics.getDatagramsIn() + "\n");
+			out.print("datagrams_out " + metrics.getDatagramsOut() + "\n");
+		}
+	}
+	
+	/**
+	 * Writes one line for each session in the latest snapshot.
+	 */
+	private void sessions(PrintWriter out)
+	{
+		for (ServerSnapshot.Session session : snapshot.getSessions())
+		{
+			out.print(session.getId()
+				+ "\t" + name(session, 0) + "\t" + session.getPlayerScore(0)
+				+ "\t" + name(session, 1) + "\t" + session.getPlayerScore(1) + "\n");
+		}
+	}
+	
+	/**
+	 * Writes the players and scores of one session in the latest snapshot.
+	 */
+	private void session(String word, PrintWriter out)
+	{
+		ServerSnapshot.Session session;
+		try
+		{
+			session = snapshot.getSession(Integer.parseInt(word));
+		} catch (NumberFormatException e)
+		{
+			out.print("error invalid session id\n");
+			return;
+		}
+		if (session == null)
+		{
+			out.print("error no such session\n");
+			return;
+		}
+		
+		out.print("id " + session.getId() + "\n");
+		out.print("players " + session.getPlayers() + "\n");
+		out.print("waiting " + session.isWaiting() + "\n");
+		for (int id = 0; id < session.getPlayers(); id++)
+		{
+			out.print("player" + id + " " + session.getPlayerScore(id)
+				+ " " + name(session, id) + "\n");
+		}
+	}
+	
+	/**
+	 * Starts or stops draining on every shard, and takes a new snapshot so
+	 * that the stats show it.
+	 */
+	private void drain(boolean draining, PrintWriter out)
+	{
+		for (MailboxManager manager : managers)
+		{
+			manager.setDraining(draining);
+		}
+		publish();
+		out.print("draining " + draining + "\n");
+		out.print("sessions " + snapshot.getSessionCount() + "\n");
+	}
+	
+	/**
+	 * Gets a player's name from a session, escaped, or "-" if it is not
+	 * known yet.
+	 */
+	private static String name(ServerSnapshot.Session session, int id)
+	{
+		String name = session.getPlayerName(id);
+		return name != null ? escape(name) : "-";
+	}
+	
+	/**
+	 * Percent-encodes the characters of a name that could break up a line
+	 * of output.
+	 * 
+	 * @param  name			The name
+	 * @return escaped		The name, with '%' and control characters
+	 *						encoded
+	 */
+	static String escape(String name)
+	{
+		if (name.equals("-"))
+			return "%2D";		// not to be read as a name not known yet
+		
+		StringBuilder escaped = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++)
+		{
+			char c = name.charAt(i);
+			if (c == '%' || Character.isISOControl(c))
+			{
+				for (byte b : String.valueOf(c).getBytes(StandardCharsets.UTF_8))
+				{
+					escaped.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+				}
+			} else
+				escaped.append(c);
+		}
+		return escaped.toString();
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * Class ChannelTransport carries the datagrams of a MouseCatElephant server
+ * over a non-blocking datagram channel. Sends never block; a datagram that
+ * does not fit in the socket send buffer is dropped, as it could be anywhere
+ * else along the way. Receives drain the channel and wait on a selector only
+ * when it is empty.
+ * 
+ * Each sending thread copies its datagrams into a direct buffer of its own,
+ * which the channel sends from without a further copy, so a send allocates
+ * nothing when the caller passes the address it keeps for the destination.
+ * The selector hands ready keys to an action rather than collecting them in
+ * its selected-key set, which would allocate on every wait.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.function.Consumer;
+
+public class ChannelTransport implements Transport
+{
+	private static final Consumer<SelectionKey> IGNORE = new Consumer<SelectionKey>()
+	{
+		public void accept(SelectionKey key) {}	// the next receive finds the datagram
+	};
+	
+	private DatagramChannel channel;
+	private Selector selector;
+	private ByteBuffer buffer;		// wraps the buffer of the last receive packet
+	
+	private ThreadLocal<ByteBuffer> sendBuffers = new ThreadLocal<ByteBuffer>()
+	{
+		protected ByteBuffer initialValue()
+		{
+			return ByteBuffer.allocateDirect(OutboundRing.SLOT_SIZE);
+		}
+	};
+	
+	/**
+	 * Constructor for the ChannelTransport object.
+	 * 
+	 * @param channel			The bound datagram channel
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public ChannelTransport(DatagramChannel channel) throws IOException
+	{
+		this.channel = channel;
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+	
+	/**
+	 * Sends a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void send(DatagramPacket packet) throws IOException
+	{
+		send(packet.getData(), packet.getOffset(), packet.getLength(),
+			packet.getSocketAddress());
+	}
+	
+	/**
+	 * Sends part of a buffer as a datagram to an address.
+	 * 
+	 * @param  data				The buffer holding the datagram
+	 * @param  offset			The offset of the datagram in the buffer
+	 * @param  length			The length of the datagram
+	 * @param  address			The address to send it to
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void send(byte[] data, int offset, int length, SocketAddress address)
+		throws IOException
+	{
+		ByteBuffer out = sendBuffers.get();
+		if (out.capacity() < length)
+		{
+			out = ByteBuffer.allocateDirect(length);
+			sendBuffers.set(out);
+		}
+		out.clear();
+		out.put(data, offset, length).flip();
+		channel.send(out, address);
+	}
+	
+	/**
+	 * Receives a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * @param  timeout			The longest time to wait in milliseconds, or 0
+	 *							to wait for as long as it takes
+	 * @return received			True if a datagram was received
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public boolean receive(DatagramPacket packet, int timeout) throws IOException
+	{
+		byte[] data = packet.getData();
+		if (buffer == null || buffer.array() != data)
+		{
+			buffer = ByteBuffer.wrap(data);
+		}
+		buffer.limit(data.length).position(packet.getOffset());
+		
+		InetSocketAddress sender = (InetSocketAddress) channel.receive(buffer);
+		if (sender == null)
+		{
+			try
+			{
+				selector.select(IGNORE, timeout);
+			} catch (ClosedSelectorException e)
+			{
+				throw new ClosedChannelException();		// closed while waiting
+			}
+			sender = (InetSocketAddress) channel.receive(buffer);
+			if (sender == null)
+				return false;
+		}
+		
+		packet.setLength(buffer.position() - packet.getOffset());
+		packet.setAddress(sender.getAddress());
+		packet.setPort(sender.getPort());
+		return true;
+	}
+	
+	/**
+	 * Gets the address of the channel.
+	 * 
+	 * @return address			The local address
+	 */
+	public SocketAddress getLocalAddress()
+	{
+		try
+		{
+			return channel.getLocalAddress();
+		} catch (IOException e)
+		{
+			return null;
+		}
+	}
+	
+	/**
+	 * Closes the channel and its selector.
+	 */
+	public void close()
+	{
+		try
+		{
+			selector.close();
+			channel.close();
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
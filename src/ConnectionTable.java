@@ -0,0 +1,320 @@
+/**
+ * Class ConnectionTable maps client addresses to view proxies for the
+ * MouseCatElephant server. IPv4 clients are keyed by their address and port
+ * packed into a long and kept in an open-addressing table of parallel
+ * arrays, so a lookup costs a multiply, a few array reads and no allocation.
+ * Other clients fall back to a second open-addressing table that compares
+ * against the address stored in each proxy.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+public class ConnectionTable
+{
+	private static final long PRESENT = 1L << 48;	// marks a used IPv4 slot
+	
+	// IPv4 connections: packed keys and their proxies
+	private long[] keys;
+	private ViewProxy[] values;
+	private int size, shift;
+	
+	// All other connections
+	private ViewProxy[] others;
+	private int otherSize;
+	
+	/**
+	 * Constructor for the ConnectionTable object.
+	 * 
+	 * @param capacity		The number of connections to size the table for
+	 */
+	public ConnectionTable(int capacity)
+	{
+		int slots = tableSize(capacity);
+		keys = new long[slots];
+		values = new ViewProxy[slots];
+		shift = 64 - Integer.numberOfTrailingZeros(slots);
+		others = new ViewProxy[16];
+	}
+	
+	/**
+	 * Gets the proxy for a client.
+	 * 
+	 * @param  address		The client's IP address
+	 * @param  port			The client's port
+	 * @return proxy		The proxy, or null if the client is unknown
+	 */
+	public ViewProxy get(InetAddress address, int port)
+	{
+		if (address instanceof Inet4Address)
+		{
+			long key = key(address, port);
+			int mask = keys.length - 1;
+			for (int i = slot(key); keys[i] != 0; i = (i + 1) & mask)
+			{
+				if (keys[i] == key)
+					return values[i];
+			}
+			return null;
+		}
+		
+		int mask = others.length - 1;
+		for (int i = otherSlot(address, port, mask); others[i] != null;
+			i = (i + 1) & mask)
+		{
+			if (matches(others[i], address, port))
+				return others[i];
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds the proxy for a client that is not yet in the table.
+	 * 
+	 * @param  address		The client's IP address
+	 * @param  port			The client's port
+	 * @param  proxy		The proxy
+	 */
+	public void put(InetAddress address, int port, ViewProxy proxy)
+	{
+		if (address instanceof Inet4Address)
+		{
+			if (2 * (size + 1) > keys.length)
+			{
+				resize();
+			}
+			long key = key(address, port);
+			int mask = keys.length - 1;
+			int i = slot(key);
+			while (keys[i] != 0)
+			{
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = proxy;
+			size++;
+			return;
+		}
+		
+		if (2 * (otherSize + 1) > others.length)
+		{
+			resizeOthers();
+		}
+		int mask = others.length - 1;
+		int i = otherSlot(address, port, mask);
+		while (others[i] != null)
+		{
+			i = (i + 1) & mask;
+		}
+		others[i] = proxy;
+		otherSize++;
+	}
+	
+	/**
+	 * Removes the proxy for a client.
+	 * 
+	 * @param  address		The client's IP address
+	 * @param  port			The client's port
+	 * @return proxy		The proxy that was removed, or null if there was none
+	 */
+	public ViewProxy remove(InetAddress address, int port)
+	{
+		if (address instanceof Inet4Address)
+		{
+			long key = key(address, port);
+			int mask = keys.length - 1;
+			for (int i = slot(key); keys[i] != 0; i = (i + 1) & mask)
+			{
+				if (keys[i] == key)
+				{
+					ViewProxy proxy = values[i];
+					deleteAt(i);
+					size--;
+					return proxy;
+				}
+			}
+			return null;
+		}
+		
+		int mask = others.length - 1;
+		for (int i = otherSlot(address, port, mask); others[i] != null;
+			i = (i + 1) & mask)
+		{
+			if (matches(others[i], address, port))
+			{
+				ViewProxy proxy = others[i];
+				deleteOtherAt(i);
+				otherSize--;
+				return proxy;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the number of connections in the table.
+	 * 
+	 * @return size			The number of connections
+	 */
+	public int size()
+	{
+		return size + otherSize;
+	}
+	
+	/**
+	 * Packs an IPv4 address and port into a key. Inet4Address.hashCode()
+	 * is the address itself, and reading it does not copy the address.
+	 */
+	private static long key(InetAddress address, int port)
+	{
+		return PRESENT | (address.hashCode() & 0xFFFFFFFFL) << 16 | port;
+	}
+	
+	/**
+	 * Gets the home slot of a key by Fibonacci hashing.
+	 */
+	private int slot(long key)
+	{
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+	
+	/**
+	 * Gets the home slot of a non-IPv4 client.
+	 */
+	private static int otherSlot(InetAddress address, int port, int mask)
+	{
+		int h = (address.hashCode() * 31 + port) * 0x9E3779B9;
+		return (h ^ h >>> 16) & mask;
+	}
+	
+	/**
+	 * Tests whether a proxy belongs to the given client.
+	 */
+	private static boolean matches(ViewProxy proxy, InetAddress address, int port)
+	{
+		InetSocketAddress clientAddress =
+			(InetSocketAddress) proxy.getClientAddress();
+		return clientAddress.getPort() == port
+			&& clientAddress.getAddress().equals(address);
+	}
+	
+	/**
+	 * Empties an IPv4 slot and shifts back any entries that probed past it,
+	 * so lookups never need tombstones.
+	 */
+	private void deleteAt(int hole)
+	{
+		int mask = keys.length - 1;
+		int i = hole;
+		for (;;)
+		{
+			i = (i + 1) & mask;
+			if (keys[i] == 0)
+				break;
+			int home = slot(keys[i]);
+			if (((i - home) & mask) >= ((i - hole) & mask))
+			{
+				keys[hole] = keys[i];
+				values[hole] = values[i];
+				hole = i;
+			}
+		}
+		keys[hole] = 0;
+		values[hole] = null;
+	}
+	
+	/**
+	 * Empties a non-IPv4 slot, shifting back later entries as above.
+	 */
+	private void deleteOtherAt(int hole)
+	{
+		int mask = others.length - 1;
+		int i = hole;
+		for (;;)
+		{
+			i = (i + 1) & mask;
+			if (others[i] == null)
+				break;
+			InetSocketAddress clientAddress =
+				(InetSocketAddress) others[i].getClientAddress();
+			int home = otherSlot(clientAddress.getAddress(),
+				clientAddress.getPort(), mask);
+			if (((i - home) & mask) >= ((i - hole) & mask))
+			{
+				others[hole] = others[i];
+				hole = i;
+			}
+		}
+		others[hole] = null;
+	}
+	
+	/**
+	 * Doubles the IPv4 table.
+	 */
+	private void resize()
+	{
+		long[] oldKeys = keys;
+		ViewProxy[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new ViewProxy[oldKeys.length * 2];
+		shift--;
+		
+		int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++)
+		{
+			if (oldKeys[j] != 0)
+			{
+				int i = slot(oldKeys[j]);
+				while (keys[i] != 0)
+				{
+					i = (i + 1) & mask;
+				}
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+	
+	/**
+	 * Doubles the non-IPv4 table.
+	 */
+	private void resizeOthers()
+	{
+		ViewProxy[] old = others;
+		others = new ViewProxy[old.length * 2];
+		int mask = others.length - 1;
+		for (ViewProxy proxy : old)
+		{
+			if (proxy != null)
+			{
+				InetSocketAddress clientAddress =
+					(InetSocketAddress) proxy.getClientAddress();
+				int i = otherSlot(clientAddress.getAddress(),
+					clientAddress.getPort(), mask);
+				while (others[i] != null)
+				{
+					i = (i + 1) & mask;
+				}
+				others[i] = proxy;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the power of two table size that holds a number of entries at
+	 * no more than half load.
+	 */
+	private static int tableSize(int capacity)
+	{
+		int slots = 16;
+		while (slots < 2 * capacity && slots < (1 << 30))
+		{
+			slots <<= 1;
+		}
+		return slots;
+	}
+}
@@ -0,0 +1,187 @@
+/**
+ * Class JoinCookies issues and checks the cookies a client must echo in its
+ * join message before the MouseCatElephant server keeps any state for it.
+ * A cookie is a SipHash-2-4 MAC of the client's address and port and the
+ * current epoch under a secret key, so the server can check it without
+ * remembering that it was ever issued. Cookies from the current and the
+ * previous epoch are accepted. A JoinCookies object belongs to one receive
+ * thread.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.security.SecureRandom;
+
+public class JoinCookies
+{
+	/** The length of a cookie in bytes. */
+	public static final int LENGTH = 8;
+	
+	private static final long EPOCH_MILLIS = 30000;
+	
+	private long k0, k1;
+	private long v0, v1, v2, v3;	// SipHash state
+	
+	/**
+	 * Constructor for the JoinCookies object. Picks a fresh secret key.
+	 */
+	public JoinCookies()
+	{
+		SecureRandom random = new SecureRandom();
+		k0 = random.nextLong();
+		k1 = random.nextLong();
+	}
+	
+	/**
+	 * Gets the cookie for a client in the current epoch.
+	 * 
+	 * @param  address		The client's IP address
+	 * @param  port			The client's port
+	 * @return cookie		The cookie
+	 */
+	public long issue(InetAddress address, int port)
+	{
+		return mac(address, port, epoch());
+	}
+	
+	/**
+	 * Checks a cookie echoed by a client.
+	 * 
+	 * @param  address		The client's IP address
+	 * @param  port			The client's port
+	 * @param  cookie		The cookie
+	 * @return valid		True if the cookie was issued to this client in the
+	 *						current or previous epoch
+	 */
+	public boolean verify(InetAddress address, int port, long cookie)
+	{
+		long epoch = epoch();
+		return cookie == mac(address, port, epoch)
+			|| cookie == mac(address, port, epoch - 1);
+	}
+	
+	/**
+	 * Reads a cookie from a message.
+	 * 
+	 * @param  data			The buffer holding the message
+	 * @param  offset		The offset of the cookie
+	 * @return cookie		The cookie
+	 */
+	public static long read(byte[] data, int offset)
+	{
+		long cookie = 0;
+		for (int i = 0; i < LENGTH; i++)
+		{
+			cookie = (cookie << 8) | (data[offset + i] & 0xFF);
+		}
+		return cookie;
+	}
+	
+	/**
+	 * Writes a cookie into a message.
+	 * 
+	 * @param  cookie		The cookie
+	 * @param  data			The buffer holding the message
+	 * @param  offset		The offset of the cookie
+	 */
+	public static void write(long cookie, byte[] data, int offset)
+	{
+		for (int i = LENGTH - 1; i >= 0; i--)
+		{
+			data[offset + i] = (byte) cookie;
+			cookie >>>= 8;
+		}
+	}
+	
+	/**
+	 * Gets the current epoch.
+	 */
+	private static long epoch()
+	{
+		return System.currentTimeMillis() / EPOCH_MILLIS;
+	}
+	
+	/**
+	 * Computes the MAC of a client and epoch. IPv4 addresses are read through
+	 * Inet4Address.hashCode(), which is the address itself.
+	 */
+	private long mac(InetAddress address, int port, long epoch)
+	{
+		long hi = 0, lo;
+		if (address instanceof Inet4Address)
+		{
+			lo = (address.hashCode() & 0xFFFFFFFFL) << 16 | port;
+		} else
+		{
+			byte[] bytes = address.getAddress();
+			lo = port;
+			for (int i = 0; i < bytes.length; i++)
+			{
+				if (i < 8)
+				{
+					hi = (hi << 8) | (bytes[i] & 0xFF);
+				} else
+					lo = (lo << 8) ^ (bytes[i] & 0xFF) ^ (lo >>> 56);
+			}
+		}
+		return sipHash(hi, lo, epoch);
+	}
+	
+	/**
+	 * SipHash-2-4 of a message of three 64-bit words.
+	 */
+	private long sipHash(long m0, long m1, long m2)
+	{
+		v0 = k0 ^ 0x736f6d6570736575L;
+		v1 = k1 ^ 0x646f72616e646f6dL;
+		v2 = k0 ^ 0x6c7967656e657261L;
+		v3 = k1 ^ 0x7465646279746573L;
+		
+		compress(m0);
+		compress(m1);
+		compress(m2);
+		compress(24L << 56);	// message length in the last word
+		
+		v2 ^= 0xff;
+		round();
+		round();
+		round();
+		round();
+		return v0 ^ v1 ^ v2 ^ v3;
+	}
+	
+	/**
+	 * Absorbs one message word with two SipRounds.
+	 */
+	private void compress(long word)
+	{
+		v3 ^= word;
+		round();
+		round();
+		v0 ^= word;
+	}
+	
+	/**
+	 * One SipRound.
+	 */
+	private void round()
+	{
+		v0 += v1;
+		v1 = Long.rotateLeft(v1, 13);
+		v1 ^= v0;
+		v0 = Long.rotateLeft(v0, 32);
+		v2 += v3;
+		v3 = Long.rotateLeft(v3, 16);
+		v3 ^= v2;
+		v0 += v3;
+		v3 = Long.rotateLeft(v3, 21);
+		v3 ^= v0;
+		v2 += v1;
+		v1 = Long.rotateLeft(v1, 17);
+		v1 ^= v2;
+		v2 = Long.rotateLeft(v2, 32);
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Class LatencyHistogram counts latencies in buckets whose width grows with
+ * the latency, in the style of an HDR histogram. Latencies below 128
+ * nanoseconds each have their own bucket; above that, every power of two is
+ * split into 64 buckets, so a percentile is reported to within about 1.6%
+ * of the true value whatever its size.
+ * 
+ * Any number of threads may record into one histogram. The counts are
+ * striped: each thread records into one of several copies of the buckets,
+ * picked by its thread id, so threads on different cores do not fight over
+ * the cache line of the bucket that most latencies fall in. Recording is
+ * one atomic increment on the thread's own stripe; reading adds up the
+ * stripes.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram
+{
+	private static final int SUB_BITS = 7;
+	private static final int HALF = 1 << (SUB_BITS - 1);	// buckets per power of two
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF;
+	private static final int MAX = BUCKETS;		// where a stripe keeps its maximum
+	private static final int STRIPES = Math.min(64,	// a power of two, at least the cores
+		Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+	
+	private AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+	
+	/**
+	 * Constructor for the LatencyHistogram object.
+	 */
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < stripes.length; i++)
+		{
+			stripes[i] = new AtomicLongArray(BUCKETS + 1);
+		}
+	}
+	
+	/**
+	 * Records one latency.
+	 * 
+	 * @param  nanos			The latency in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+		{
+			nanos = 0;
+		}
+		AtomicLongArray stripe =
+			stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)];
+		stripe.incrementAndGet(indexOf(nanos));
+		long highest;
+		while (nanos > (highest = stripe.get(MAX))
+			&& !stripe.compareAndSet(MAX, highest, nanos))
+		{
+			// another thread raised the maximum; look again
+		}
+	}
+	
+	/**
+	 * Gets the number of latencies recorded.
+	 * 
+	 * @return count			The count
+	 */
+	public long getCount()
+	{
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			count += countOf(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Gets the largest latency recorded.
+	 * 
+	 * @return nanos			The latency in nanoseconds
+	 */
+	public long getMax()
+	{
+		long max = 0;
+		for (AtomicLongArray stripe : stripes)
+		{
+			max = Math.max(max, stripe.get(MAX));
+		}
+		return max;
+	}
+	
+	/**
+	 * Gets the latency that the given percentage of recorded latencies are at
+	 * or below, rounded up to the top of its bucket.
+	 * 
+	 * @param  percentile		The percentage, from 0 to 100
+	 * @return nanos			The latency in nanoseconds, or 0 if nothing
+	 *							has been recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long count = getCount();
+		if (count == 0)
+			return 0;
+		
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += countOf(i);
+			if (seen >= rank)
+				return Math.min(highestValueOf(i), getMax());
+		}
+		return getMax();
+	}
+	
+	/**
+	 * Clears the histogram.
+	 */
+	public void reset()
+	{
+		for (AtomicLongArray stripe : stripes)
+		{
+			for (int i = 0; i <= MAX; i++)
+			{
+				stripe.set(i, 0);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of latencies counted in a bucket, over all stripes.
+	 */
+	private long countOf(int index)
+	{
+		long count = 0;
+		for (AtomicLongArray stripe : stripes)
+		{
+			count += stripe.get(index);
+		}
+		return count;
+	}
+	
+	/**
+	 * Gets the bucket a latency is counted in.
+	 */
+	private static int indexOf(long nanos)
+	{
+		int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(nanos) - SUB_BITS);
+		return shift * HALF + (int) (nanos >>> shift);
+	}
+	
+	/**
+	 * Gets the largest latency counted in a bucket.
+	 */
+	private static long highestValueOf(int index)
+	{
+		if (index < 2 * HALF)
+			return index;
+		
+		int shift = index / HALF - 1;
+		long low = (long) (index % HALF + HALF) << shift;
+		return low + (1L << shift) - 1;
+	}
+}
@@ -3,62 +3,515 @@
  * It keeps track of all view proxies, reads all incoming datagrams, and
  * forwards each datagram to the appropriate proxy.
  * 
+ * A client may play many games at once from one address by multiplexing:
+ * each of its datagrams starts with 'X' and a stream id, and each stream
+ * has a proxy and a session of its own. The proxy for the address finds the
+ * stream's proxy by indexing on the stream id. Stream ids run below
+ * ViewProxy.MAX_STREAMS, and datagrams on other streams are dropped. The
+ * array of stream proxies grows as higher stream ids are opened. A
+ * stream whose join is invalid, or that quits before joining, is closed
+ * without touching any session.
+ * 
  * @author  Adam Warner
  * @version 8/5/2015
  */
 
 import java.io.IOException;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.SocketAddress;
-import java.util.HashMap;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 public class MailboxManager 
 {
 	// Hidden data members
-	private DatagramSocket mailbox;
+	private Transport transport;
 	private byte[] message = new byte [128];
+	private DatagramPacket packet = new DatagramPacket (message, message.length);
 	private SessionManager sessionManager = new SessionManager();
 	
-	private HashMap<SocketAddress, ViewProxy> proxyMap =
-		new HashMap<SocketAddress, ViewProxy>();
+	private static final int TICK_MILLIS = 1000;
+	private TimingWheel wheel;
+	private long tick;
+	
+	private ConnectionTable proxyMap = new ConnectionTable(1024);
+	
+	// Stateless replies to clients that have no proxy yet
+	private static final int JOIN_LENGTH = 1 + JoinCookies.LENGTH + 2;
+	private JoinCookies cookies = new JoinCookies();
+	private byte[] reply = new byte [ViewProxy.MUX_HEADER + 1 + JoinCookies.LENGTH];
+	private DatagramPacket replyPacket = new DatagramPacket (reply, reply.length);
+	
+	// Admission control
+	private RateLimiter limiter;
+	private OverloadGovernor governor;
+	private volatile boolean draining = false;
+	
+	private OutboundRing outbound;
+	private boolean compound = false;
+	private Metrics metrics;
 	
 	/**
 	 * Constructor for the MailboxManager object.
 	 * 
-	 * @param mailbox		The datagram mailbox
+	 * @param transport		The transport datagrams arrive on
+	 */
+	public MailboxManager (Transport transport)
+	{
+		this.transport = transport;
+	}
+	
+	/**
+	 * Set the session manager that players arriving at this mailbox join.
+	 * 
+	 * @param sessionManager	The session manager
+	 */
+	public void setSessionManager(SessionManager sessionManager)
+	{
+		this.sessionManager = sessionManager;
+	}
+	
+	/**
+	 * Drop clients that have sent nothing for the given time. Their sessions
+	 * end as if they had quit, which tells the other player.
+	 * 
+	 * @param seconds			The idle timeout in seconds
+	 */
+	public void setIdleTimeout(int seconds)
+	{
+		wheel = new TimingWheel(TICK_MILLIS, seconds * 1000 / TICK_MILLIS);
+	}
+	
+	/**
+	 * Limit how fast each client may send. Datagrams over the limit are
+	 * dropped before they are processed. Each stream of a multiplexing
+	 * client has a limit of its own, so a gateway's players do not share
+	 * one; datagrams that open a stream count against the client's address.
+	 * 
+	 * @param limiter			The rate limiter
 	 */
-	public MailboxManager (DatagramSocket mailbox)
+	public void setRateLimiter(RateLimiter limiter)
 	{
-		this.mailbox = mailbox;
+		this.limiter = limiter;
 	}
 	
 	/**
-	 * Receive and process a datagram.
+	 * Report processing times to an overload governor, and turn away new
+	 * players with a busy reply while it says the server is overloaded.
+	 * Messages run on session actors, and replies queued on an outbound
+	 * ring, are reported when they are done. Call before setOutboundRing().
+	 * 
+	 * @param governor			The overload governor
+	 */
+	public void setOverloadGovernor(OverloadGovernor governor)
+	{
+		this.governor = governor;
+	}
+	
+	/**
+	 * Turn away new players with a busy reply, as when overloaded, while
+	 * the players already in sessions play on. A server is drained this way
+	 * before it is stopped.
+	 * 
+	 * @param draining			True to turn away new players
+	 */
+	public void setDraining(boolean draining)
+	{
+		this.draining = draining;
+	}
+	
+	/**
+	 * Tells whether new players are being turned away.
+	 * 
+	 * @return draining			True if the mailbox is draining
+	 */
+	public boolean isDraining()
+	{
+		return draining;
+	}
+	
+	/**
+	 * Gets the number of client addresses this mailbox has a proxy for. The
+	 * count belongs to the receive thread, so read from any other thread it
+	 * may be a moment old.
+	 * 
+	 * @return count			The number of connections
+	 */
+	public int getConnections()
+	{
+		return proxyMap.size();
+	}
+	
+	/**
+	 * Count what this mailbox does: messages by type and the time each took
+	 * to process, connections, quits and the datagrams turned away.
+	 * Datagrams in and out are counted by giving the mailbox a
+	 * MeteredTransport.
+	 * 
+	 * @param metrics			The metrics
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Send replies to clients from a writer thread, through an outbound ring
+	 * of the given size. Game logic then only copies each message onto the
+	 * ring, or drops it if the ring stays full. Call after setMetrics() so
+	 * that such drops are counted.
+	 * 
+	 * @param size				The number of messages the ring holds
+	 */
+	public void setOutboundRing(int size)
+	{
+		outbound = new OutboundRing(transport, size);
+		outbound.setOverloadGovernor(governor);
+		outbound.setMetrics(metrics);
+		outbound.start();
+	}
+	
+	/**
+	 * Combine the reports from one game event into a single compound
+	 * datagram for each player.
+	 * 
+	 * @param compound			True to send compound datagrams
+	 */
+	public void setCompound(boolean compound)
+	{
+		this.compound = compound;
+	}
+	
+	/**
+	 * Receive and process a datagram. With an idle timeout, give up waiting
+	 * after a tick so that idle clients are reaped even when nothing arrives.
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
 	public void receiveMessage() throws IOException
 	{
-		DatagramPacket packet = new DatagramPacket (message, message.length);
-		mailbox.receive(packet);
-		SocketAddress clientAddress = packet.getSocketAddress();
+		if (!transport.receive(packet, wheel != null ? TICK_MILLIS : 0))
+		{
+			reap();
+			return;
+		}
 		
-		ViewProxy proxy = proxyMap.get (clientAddress);
+		int length = packet.getLength();
+		ServerEvents.Receive event = null;
+		if (ServerEvents.Receive.enabled())
+		{
+			event = new ServerEvents.Receive();
+			event.begin();
+		}
+		reap();
+		dispatch(packet.getAddress(), packet.getPort(), length);
+		if (event != null && event.shouldCommit())
+		{
+			int mux = (length > ViewProxy.MUX_HEADER && message[0] == 'X')
+				? ViewProxy.MUX_HEADER : 0;
+			event.length = length;
+			event.opcode = (char) message[unwrap(mux, length)];
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Forward a received datagram to the proxy for its sender.
+	 * 
+	 * @param address			The address of the sender
+	 * @param port				The port of the sender
+	 * @param length			The length of the datagram in the message buffer
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void dispatch(InetAddress address, int port, int length)
+		throws IOException
+	{
+		long now = (limiter != null || governor != null || metrics != null)
+			? System.nanoTime() : 0;
+		ViewProxy proxy = proxyMap.get (address, port);
 		if (proxy == null)
 		{
-			proxy = new ViewProxy (mailbox, clientAddress);
+			if (!admit(address, port, length, now))
+				return;
+			
+			InetSocketAddress clientAddress = new InetSocketAddress (address, port);
+			proxy = new ViewProxy (transport, clientAddress);
 			proxy.setViewListener(sessionManager);
-			proxyMap.put(clientAddress, proxy);
+			proxy.setOutboundRing(outbound);
+			proxy.setMetrics(metrics);
+			proxy.setOverloadGovernor(governor);
+			if (compound)
+			{
+				proxy.setCompound(true);
+			}
+			proxyMap.put(address, port, proxy);
+			if (metrics != null)
+			{
+				metrics.connection(1);
+			}
+			if (wheel != null)
+			{
+				wheel.add(proxy, tick);
+			}
+		} else
+			proxy.setLastActive(tick);
+		
+		ViewProxy target = proxy;
+		int stream = -1, offset = 0;
+		if (length > ViewProxy.MUX_HEADER && message[0] == 'X')
+		{
+			stream = (message[1] & 0xFF) << 8 | (message[2] & 0xFF);
+			target = proxy.getStream(stream);
+			offset = ViewProxy.MUX_HEADER;
+		}
+		
+		// an open stream draws on its own bucket; opening one draws on the address's
+		if (limiter != null && !limiter.tryAcquire(target != null ? target : proxy, now))
+		{
+			if (metrics != null)
+			{
+				metrics.dropped();
+			}
+			return;
+		}
+		if (target == null)
+		{
+			if (stream >= ViewProxy.MAX_STREAMS)
+			{
+				if (metrics != null)
+				{
+					metrics.dropped();
+				}
+				return;
+			}
+			target = openStream(proxy, stream, length, now);
+			if (target == null)
+				return;
 		}
 		
-		int session = proxy.process(packet);	// if a session id is returned, that session is ending
+		int session = target.process(message, offset, length - offset);	// if non-zero, the proxy is going and its session, if any, is ending
+		if (governor != null || metrics != null)
+		{
+			long done = System.nanoTime();
+			if (governor != null && !target.hasActor())
+			{
+				governor.record(done - now, done);	// else the actor reports it when done
+			}
+			if (metrics != null)
+			{
+				metrics.processed(message[unwrap(offset, length)], done - now);
+			}
+		}
 		if (session != 0)
 		{
-			if (proxyMap.remove(clientAddress) != null)
+			if (metrics != null)
+			{
+				metrics.quit();
+			}
+			if (target != proxy)
+			{
+				proxy.closeStream(stream);
+				target.close();
+				sessionManager.endSession(session, target);
+			} else if (proxyMap.remove(address, port) != null)
+			{
+				proxy.close();
+				closeStreams(proxy);
+				sessionManager.endSession(session, proxy);
+				if (metrics != null)
+				{
+					metrics.connection(-1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Open a stream for a client whose address has already been admitted.
+	 * Only a join may open a stream, and not while the server is overloaded
+	 * or draining.
+	 * 
+	 * @param proxy				The proxy for the client's address
+	 * @param stream			The stream id
+	 * @param length			The length of the datagram in the message buffer
+	 * @param now				The current time in nanoseconds
+	 * @return target			The proxy for the new stream, or null if the
+	 *							stream was not opened
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private ViewProxy openStream(ViewProxy proxy, int stream, int length,
+		long now) throws IOException
+	{
+		if (message[unwrap(ViewProxy.MUX_HEADER, length)] != 'J')
+		{
+			if (metrics != null)
+			{
+				metrics.dropped();
+			}
+			return null;
+		}
+		
+		if (draining || governor != null && governor.isOverloaded(now))
+		{
+			if (metrics != null)
+			{
+				metrics.busy();
+			}
+			InetSocketAddress clientAddress =
+				(InetSocketAddress) proxy.getClientAddress();
+			System.arraycopy(message, 0, reply, 0, ViewProxy.MUX_HEADER);
+			reply[ViewProxy.MUX_HEADER] = 'B';
+			sendReply(clientAddress.getAddress(), clientAddress.getPort(),
+				ViewProxy.MUX_HEADER + 1);
+			return null;
+		}
+		
+		ViewProxy target = proxy.openStream(stream);
+		target.setViewListener(sessionManager);
+		return target;
+	}
+	
+	/**
+	 * End the sessions of every stream of a client that is going away.
+	 * 
+	 * @param proxy				The proxy for the client's address
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void closeStreams(ViewProxy proxy) throws IOException
+	{
+		ViewProxy[] streams = proxy.getStreams();
+		if (streams == null)
+			return;
+		
+		for (int i = 0; i < streams.length; i++)
+		{
+			if (streams[i] != null)
+			{
+				streams[i].close();
+				sessionManager.endSession(streams[i].expire(), streams[i]);
+				streams[i] = null;
+			}
+		}
+	}
+	
+	/**
+	 * Decide whether a datagram from an unknown client may open a connection.
+	 * Only a join carrying a cookie issued to that client may. A join without
+	 * a valid cookie is answered with a fresh one, which is no longer than the
+	 * join itself; anything else is dropped. A valid join is still refused
+	 * with a busy reply while the server is overloaded or draining. Nothing is kept for
+	 * the client either way, so spoofed traffic cannot use up memory. A join
+	 * on a stream or in an envelope is handled the same way, and the reply
+	 * goes back on the stream, outside any envelope.
+	 * 
+	 * @param address			The address of the sender
+	 * @param port				The port of the sender
+	 * @param length			The length of the datagram in the message buffer
+	 * @param now				The current time in nanoseconds
+	 * @return admit			True if a proxy should be created for the client
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private boolean admit(InetAddress address, int port, int length, long now)
+		throws IOException
+	{
+		int mux = (length > ViewProxy.MUX_HEADER && message[0] == 'X')
+			? ViewProxy.MUX_HEADER : 0;
+		int offset = unwrap(mux, length);
+		if (length < offset + JOIN_LENGTH || message[offset] != 'J')
+		{
+			if (metrics != null)
+			{
+				metrics.dropped();
+			}
+			return false;
+		}
+		System.arraycopy(message, 0, reply, 0, mux);
+		
+		if (cookies.verify(address, port, JoinCookies.read(message, offset + 1)))
+		{
+			if (!draining && (governor == null || !governor.isOverloaded(now)))
+				return true;
+			
+			if (metrics != null)
+			{
+				metrics.busy();
+			}
+			reply[mux] = 'B';
+			sendReply(address, port, mux + 1);
+			return false;
+		}
+		
+		if (metrics != null)
+		{
+			metrics.cookieIssued();
+		}
+		reply[mux] = 'K';
+		JoinCookies.write(cookies.issue(address, port), reply, mux + 1);
+		sendReply(address, port, mux + 1 + JoinCookies.LENGTH);
+		return false;
+	}
+	
+	/**
+	 * Find a message inside its reliable delivery envelope, if it has one.
+	 * 
+	 * @param offset			The offset of the message or envelope in the
+	 *							message buffer
+	 * @param length			The length of the datagram in the message buffer
+	 * @return offset			The offset of the message
+	 */
+	private int unwrap(int offset, int length)
+	{
+		return ReliableChannel.unwrap(message, offset, length - offset);
+	}
+	
+	/**
+	 * Send the reply buffer to a client that has no proxy.
+	 * 
+	 * @param address			The address of the client
+	 * @param port				The port of the client
+	 * @param length			The length of the reply
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void sendReply(InetAddress address, int port, int length)
+		throws IOException
+	{
+		replyPacket.setData(reply, 0, length);
+		replyPacket.setAddress(address);
+		replyPacket.setPort(port);
+		transport.send(replyPacket);
+	}
+	
+	/**
+	 * Advance the idle timer and end the sessions of clients that timed out.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void reap() throws IOException
+	{
+		if (wheel == null)
+			return;
+		
+		tick = wheel.currentTick();
+		ViewProxy proxy = wheel.advance(tick);
+		while (proxy != null)
+		{
+			ViewProxy next = proxy.getTimerNext();
+			InetSocketAddress clientAddress =
+				(InetSocketAddress) proxy.getClientAddress();
+			proxyMap.remove(clientAddress.getAddress(), clientAddress.getPort());
+			proxy.close();
+			closeStreams(proxy);
+			sessionManager.endSession(proxy.expire(), proxy);
+			if (metrics != null)
 			{
-			sessionManager.quit(session);
+				metrics.expired();
+				metrics.connection(-1);
 			}
+			proxy = next;
 		}
 	}
 }
@@ -0,0 +1,65 @@
+/**
+ * Class Matchmaker holds the session that is waiting for a second player.
+ * One matchmaker is shared by every session manager serving a port, so a
+ * player arriving on one receive thread can be paired with a player waiting
+ * on another.
+ * 
+ * The waiting session is kept in a single atomic slot. A player arriving
+ * looks at the slot: if a session is waiting it takes it with one
+ * compare-and-set, and if not it offers its own session with another. Only
+ * one of two players arriving at once can win the offer, and the other then
+ * finds the winner's session and takes it, so two players are never both
+ * left waiting. A session that ends while it is waiting is left in the slot
+ * and skipped by whoever takes it next.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class Matchmaker
+{
+	private AtomicReference<MouseCatElephantServerState> waiting =
+		new AtomicReference<MouseCatElephantServerState>();
+	
+	/**
+	 * Constructor for the Matchmaker object.
+	 */
+	public Matchmaker(){}
+	
+	/**
+	 * Gets the waiting session without taking it.
+	 * 
+	 * @return model		The waiting session, or null if there is none
+	 */
+	public MouseCatElephantServerState peek()
+	{
+		return waiting.get();
+	}
+	
+	/**
+	 * Makes a session whose first player is waiting for an opponent the
+	 * waiting session, if no other session is waiting.
+	 * 
+	 * @param  model		The session
+	 * @return offered		False if another session is waiting; take that
+	 *						one instead
+	 */
+	public boolean offer(MouseCatElephantServerState model)
+	{
+		return waiting.compareAndSet(null, model);
+	}
+	
+	/**
+	 * Takes the waiting session. The session may have ended since it was
+	 * offered; the caller finds that out when it tries to join it.
+	 * 
+	 * @param  model		The session peek() returned
+	 * @return taken		False if another player took it first
+	 */
+	public boolean take(MouseCatElephantServerState model)
+	{
+		return waiting.compareAndSet(model, null);
+	}
+}
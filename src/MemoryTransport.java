@@ -0,0 +1,446 @@
+/**
+ * Class MemoryTransport carries datagrams between a MouseCatElephant server
+ * and its clients inside one program, with no sockets and no kernel. A
+ * datagram is copied into a slot of the ring of the transport bound to its
+ * address, and the receiving thread copies it out from there. The slots are
+ * allocated when the transport is opened, so sending and receiving allocate
+ * nothing. As with UDP, a datagram to an address nobody is bound to, or to
+ * a transport whose ring is full, is dropped.
+ * 
+ * Transports are opened on a Network, which hands out addresses in
+ * 10.0.0.0/8 to clients that do not ask for one. Addresses are made from
+ * their bytes, so nothing is ever looked up.
+ * 
+ * Datagrams from one thread arrive in the order they were sent, but
+ * datagrams from different threads are interleaved as the threads happen to
+ * run, and a waiting receiver wakes when the scheduler lets it. A test that
+ * needs the same run every time uses a stepped network instead: datagrams
+ * wait on the network, in the order they were sent, until the test calls
+ * step() to deliver the oldest, and a receive never waits.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class MemoryTransport implements Transport
+{
+	/** The largest datagram that can be sent: a UDP payload in a 1500 byte MTU. */
+	public static final int MAX_DATAGRAM = 1472;
+	
+	private static final int SPINS = 100;	// empty polls before the receiver parks
+	
+	private Network network;
+	private InetSocketAddress address;
+	
+	private Ring ring;
+	private volatile Thread receiver;		// set while the receiver is parked
+	private volatile boolean closed = false;
+	
+	/**
+	 * Constructor for the MemoryTransport object. Transports are opened
+	 * through Network.open().
+	 */
+	private MemoryTransport(Network network, InetSocketAddress address,
+		int capacity)
+	{
+		this.network = network;
+		this.address = address;
+		ring = new Ring(capacity);
+	}
+	
+	/**
+	 * Sends a datagram. The data is copied, so the packet may be reused as
+	 * soon as this returns.
+	 * 
+	 * @param  packet			The packet
+	 * 
+	 * @throws IOException		Thrown if the transport is closed
+	 */
+	public void send(DatagramPacket packet) throws IOException
+	{
+		send(packet.getData(), packet.getOffset(), packet.getLength(),
+			packet.getSocketAddress());
+	}
+	
+	/**
+	 * Sends part of a buffer as a datagram to an address. The data is
+	 * copied, so the buffer may be reused as soon as this returns.
+	 * 
+	 * @param  data				The buffer holding the datagram
+	 * @param  offset			The offset of the datagram in the buffer
+	 * @param  length			The length of the datagram
+	 * @param  address			The address to send it to
+	 * 
+	 * @throws IOException		Thrown if the transport is closed or the
+	 *							datagram is longer than MAX_DATAGRAM
+	 */
+	public void send(byte[] data, int offset, int length, SocketAddress address)
+		throws IOException
+	{
+		if (closed)
+			throw new SocketException("Transport closed");
+		if (length > MAX_DATAGRAM)
+			throw new SocketException("Datagram too long: " + length);
+		
+		if (network.pending != null)
+		{
+			network.pending.offer(data, offset, length, this.address, address);
+			return;		// held until the network is stepped
+		}
+		
+		MemoryTransport target = network.bound.get(address);
+		if (target != null)
+		{
+			target.deliver(data, offset, length, this.address);
+		}
+	}
+	
+	/**
+	 * Receives a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * @param  timeout			The longest time to wait in milliseconds, or 0
+	 *							to wait for as long as it takes; on a stepped
+	 *							network a receive never waits
+	 * @return received			True if a datagram was received
+	 * 
+	 * @throws IOException		Thrown if the transport is closed
+	 */
+	public boolean receive(DatagramPacket packet, int timeout) throws IOException
+	{
+		int slot = ring.peek();
+		if (slot < 0)
+		{
+			if (network.pending != null)
+				return false;
+			
+			long deadline = (timeout > 0)
+				? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+			int idle = 0;
+			while ((slot = ring.peek()) < 0)
+			{
+				if (closed)
+					throw new SocketException("Transport closed");
+				
+				if (idle < SPINS)
+				{
+					idle++;
+					Thread.onSpinWait();
+					continue;
+				}
+				
+				receiver = Thread.currentThread();
+				if (ring.peek() < 0)
+				{
+					if (timeout == 0)
+					{
+						LockSupport.park(this);
+					} else
+					{
+						long left = deadline - System.nanoTime();
+						if (left <= 0)
+						{
+							receiver = null;
+							return false;
+						}
+						LockSupport.parkNanos(this, left);
+					}
+				}
+				receiver = null;
+			}
+		}
+		
+		int length = Math.min(ring.lengths[slot],
+			packet.getData().length - packet.getOffset());
+		System.arraycopy(ring.data[slot], 0, packet.getData(), packet.getOffset(),
+			length);
+		packet.setLength(length);
+		packet.setAddress(ring.senders[slot].getAddress());
+		packet.setPort(ring.senders[slot].getPort());
+		ring.release(slot);
+		return true;
+	}
+	
+	/**
+	 * Gets the address of this transport.
+	 * 
+	 * @return address			The local address
+	 */
+	public SocketAddress getLocalAddress()
+	{
+		return address;
+	}
+	
+	/**
+	 * Closes this transport and frees its address.
+	 */
+	public void close()
+	{
+		closed = true;
+		network.bound.remove(address, this);
+		Thread waiting = receiver;
+		if (waiting != null)
+		{
+			LockSupport.unpark(waiting);
+		}
+	}
+	
+	/**
+	 * Gets the number of datagrams waiting to be received.
+	 * 
+	 * @return queued			The queue length
+	 */
+	public int getQueued()
+	{
+		return ring.size();
+	}
+	
+	/**
+	 * Copies a datagram onto this transport's ring, or drops it if the ring
+	 * is full.
+	 */
+	private void deliver(byte[] data, int offset, int length,
+		InetSocketAddress sender)
+	{
+		if (!ring.offer(data, offset, length, sender, address))
+			return;
+		
+		Thread waiting = receiver;
+		if (waiting != null)
+		{
+			LockSupport.unpark(waiting);
+		}
+	}
+	
+	/**
+	 * Class Ring is a bounded queue of datagrams in preallocated slots. Any
+	 * thread may offer; one thread takes. Each slot carries the sequence
+	 * number of the next offer or take it is ready for, so an offer claims a
+	 * slot with one compare-and-set and publishes it with one write, and a
+	 * full ring is seen without waiting.
+	 */
+	private static class Ring
+	{
+		private byte[][] data;
+		private int[] lengths;
+		private InetSocketAddress[] senders;
+		private SocketAddress[] targets;
+		private AtomicLongArray sequences;
+		private int mask;
+		
+		private AtomicLong tail = new AtomicLong();	// the next offer
+		private volatile long head = 0;				// the next take
+		
+		/**
+		 * Constructor for the Ring object.
+		 * 
+		 * @param size			The number of slots, rounded up to a power of two
+		 */
+		public Ring(int size)
+		{
+			int slots = 1;
+			while (slots < size)
+			{
+				slots <<= 1;
+			}
+			mask = slots - 1;
+			data = new byte[slots][MAX_DATAGRAM];
+			lengths = new int[slots];
+			senders = new InetSocketAddress[slots];
+			targets = new SocketAddress[slots];
+			sequences = new AtomicLongArray(slots);
+			for (int i = 0; i < slots; i++)
+			{
+				sequences.set(i, i);
+			}
+		}
+		
+		/**
+		 * Copies a datagram into the next free slot.
+		 * 
+		 * @return queued		False if the ring was full
+		 */
+		public boolean offer(byte[] payload, int offset, int length,
+			InetSocketAddress sender, SocketAddress target)
+		{
+			for (;;)
+			{
+				long position = tail.get();
+				int slot = (int) position & mask;
+				long sequence = sequences.get(slot);
+				if (sequence < position)
+					return false;		// still holds a datagram a lap behind
+				if (sequence == position && tail.compareAndSet(position, position + 1))
+				{
+					System.arraycopy(payload, offset, data[slot], 0, length);
+					lengths[slot] = length;
+					senders[slot] = sender;
+					targets[slot] = target;
+					sequences.set(slot, position + 1);
+					return true;
+				}
+			}
+		}
+		
+		/**
+		 * Finds the oldest datagram without taking it.
+		 * 
+		 * @return slot			The slot holding it, or -1 if there is none
+		 */
+		public int peek()
+		{
+			long position = head;
+			int slot = (int) position & mask;
+			return (sequences.get(slot) == position + 1) ? slot : -1;
+		}
+		
+		/**
+		 * Frees the slot of the oldest datagram once it has been copied out.
+		 * 
+		 * @param slot			The slot peek() returned
+		 */
+		public void release(int slot)
+		{
+			long position = head;
+			senders[slot] = null;
+			targets[slot] = null;
+			sequences.set(slot, position + mask + 1);
+			head = position + 1;
+		}
+		
+		/**
+		 * Gets the number of datagrams offered and not yet taken.
+		 */
+		public int size()
+		{
+			return (int) (tail.get() - head);
+		}
+	}
+	
+	/**
+	 * Class Network is a set of memory transports that can reach each other.
+	 */
+	public static class Network
+	{
+		private ConcurrentHashMap<SocketAddress, MemoryTransport> bound =
+			new ConcurrentHashMap<SocketAddress, MemoryTransport>();
+		private AtomicInteger nextHost = new AtomicInteger(1);
+		private int capacity;
+		private Ring pending;		// datagrams sent and not yet stepped, if stepped
+		
+		/**
+		 * Constructor for the Network object.
+		 * 
+		 * @param capacity		The number of datagrams each transport can
+		 *						hold before it starts dropping them, rounded up
+		 *						to a power of two
+		 */
+		public Network(int capacity)
+		{
+			this(capacity, false);
+		}
+		
+		/**
+		 * Constructor for a Network object that may be stepped. On a stepped
+		 * network a datagram waits on the network until step() delivers it,
+		 * and receives never wait, so one thread can drive a test the same
+		 * way every time.
+		 * 
+		 * @param capacity		The number of datagrams each transport, and a
+		 *						stepped network, can hold before dropping them
+		 * @param stepped		True to deliver datagrams only when stepped
+		 */
+		public Network(int capacity, boolean stepped)
+		{
+			this.capacity = capacity;
+			if (stepped)
+			{
+				pending = new Ring(capacity);
+			}
+		}
+		
+		/**
+		 * Delivers the oldest datagram waiting on a stepped network to the
+		 * transport bound to its address, if there is one. Only one thread
+		 * may step a network.
+		 * 
+		 * @return stepped		False if no datagram was waiting
+		 * 
+		 * @throws IllegalStateException		Thrown if the network is not
+		 *										stepped
+		 */
+		public boolean step()
+		{
+			if (pending == null)
+				throw new IllegalStateException("Network is not stepped");
+			
+			int slot = pending.peek();
+			if (slot < 0)
+				return false;
+			
+			MemoryTransport target = bound.get(pending.targets[slot]);
+			if (target != null)
+			{
+				target.deliver(pending.data[slot], 0, pending.lengths[slot],
+					pending.senders[slot]);
+			}
+			pending.release(slot);
+			return true;
+		}
+		
+		/**
+		 * Opens a transport bound to an address.
+		 * 
+		 * @param  address		The address
+		 * @return transport	The transport
+		 * 
+		 * @throws SocketException		Thrown if the address is in use
+		 */
+		public MemoryTransport open(InetSocketAddress address)
+			throws SocketException
+		{
+			MemoryTransport transport = new MemoryTransport(this, address, capacity);
+			if (bound.putIfAbsent(address, transport) != null)
+				throw new SocketException("Address in use: " + address);
+			return transport;
+		}
+		
+		/**
+		 * Opens a transport bound to a fresh address in 10.0.0.0/8.
+		 * 
+		 * @return transport	The transport
+		 * 
+		 * @throws SocketException		Thrown if the addresses have run out
+		 */
+		public MemoryTransport open() throws SocketException
+		{
+			int host = nextHost.getAndIncrement();
+			if (host >= 1 << 24)
+				throw new SocketException("Out of addresses");
+			
+			byte[] bytes = { 10, (byte) (host >> 16), (byte) (host >> 8), (byte) host };
+			try
+			{
+				return open(new InetSocketAddress(
+					InetAddress.getByAddress(bytes), 1024));
+			} catch (UnknownHostException e)
+			{
+				throw new SocketException(e.getMessage());	// never: the address is numeric
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Class MeteredTransport counts the datagrams passing through another
+ * transport, and times each send.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+
+public class MeteredTransport implements Transport
+{
+	private Transport transport;
+	private Metrics metrics;
+	
+	/**
+	 * Constructor for the MeteredTransport object.
+	 * 
+	 * @param transport			The transport that carries the datagrams
+	 * @param metrics			The metrics to count them in
+	 */
+	public MeteredTransport(Transport transport, Metrics metrics)
+	{
+		this.transport = transport;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Sends a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void send(DatagramPacket packet) throws IOException
+	{
+		long start = System.nanoTime();
+		transport.send(packet);
+		metrics.sent(packet.getLength(), System.nanoTime() - start);
+	}
+	
+	/**
+	 * Sends part of a buffer as a datagram to an address.
+	 * 
+	 * @param  data				The buffer holding the datagram
+	 * @param  offset			The offset of the datagram in the buffer
+	 * @param  length			The length of the datagram
+	 * @param  address			The address to send it to
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void send(byte[] data, int offset, int length, SocketAddress address)
+		throws IOException
+	{
+		long start = System.nanoTime();
+		transport.send(data, offset, length, address);
+		metrics.sent(length, System.nanoTime() - start);
+	}
+	
+	/**
+	 * Receives a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * @param  timeout			The longest time to wait in milliseconds, or 0
+	 *							to wait for as long as it takes
+	 * @return received			True if a datagram was received
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public boolean receive(DatagramPacket packet, int timeout) throws IOException
+	{
+		if (!transport.receive(packet, timeout))
+			return false;
+		
+		metrics.received(packet.getLength());
+		return true;
+	}
+	
+	/**
+	 * Gets the local address of the transport.
+	 * 
+	 * @return address			The local address
+	 */
+	public SocketAddress getLocalAddress()
+	{
+		return transport.getLocalAddress();
+	}
+	
+	/**
+	 * Closes the transport.
+	 */
+	public void close()
+	{
+		transport.close();
+	}
+}
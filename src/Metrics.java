@@ -0,0 +1,369 @@
+/**
+ * Class Metrics counts what a MouseCatElephant server does: datagrams and
+ * bytes in and out, messages by type, joins, quits, rounds and the reasons
+ * datagrams were turned away. It also keeps histograms of the time taken to
+ * process a datagram and to send one. One Metrics is shared by every shard.
+ * 
+ * Counters are LongAdders, which stripe their cells across threads under
+ * contention, and the histograms are lock-free, so counting never makes one
+ * thread wait for another. The counts can be read over JMX, or as text with
+ * write(), which MetricsServer serves to scrapers.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class Metrics implements MetricsMXBean
+{
+	/** The name the metrics are registered under in JMX. */
+	public static final String OBJECT_NAME = "MouseCatElephant:type=Metrics";
+	
+	private static final double[] PERCENTILES = {50, 99, 99.9};
+	private static final String[] PERCENTILE_NAMES = {"p50", "p99", "p999"};
+	private static final String[] QUANTILES = {"0.5", "0.99", "0.999"};
+	
+	private LongAdder datagramsIn = new LongAdder();
+	private LongAdder datagramsOut = new LongAdder();
+	private LongAdder bytesIn = new LongAdder();
+	private LongAdder bytesOut = new LongAdder();
+	private LongAdder[] messages = new LongAdder[128];		// by message letter
+	private LongAdder decodeErrors = new LongAdder();
+	private LongAdder dropped = new LongAdder();
+	private LongAdder repliesDropped = new LongAdder();
+	private LongAdder cookies = new LongAdder();
+	private LongAdder busy = new LongAdder();
+	private LongAdder joins = new LongAdder();
+	private LongAdder quits = new LongAdder();
+	private LongAdder expired = new LongAdder();
+	private LongAdder rounds = new LongAdder();
+	private LongAdder connections = new LongAdder();
+	private LongAdder sessions = new LongAdder();
+	
+	private LatencyHistogram process = new LatencyHistogram();
+	private LatencyHistogram send = new LatencyHistogram();
+	
+	/**
+	 * Constructor for the Metrics object.
+	 */
+	public Metrics()
+	{
+		for (int i = 0; i < messages.length; i++)
+		{
+			messages[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Registers these metrics with the platform MBean server.
+	 * 
+	 * @throws JMException		Thrown if they could not be registered
+	 */
+	public void register() throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+			new ObjectName(OBJECT_NAME));
+	}
+	
+	// Recording
+	
+	/**
+	 * Counts a datagram received.
+	 * 
+	 * @param length			The length of the datagram
+	 */
+	public void received(int length)
+	{
+		datagramsIn.increment();
+		bytesIn.add(length);
+	}
+	
+	/**
+	 * Counts a datagram sent.
+	 * 
+	 * @param length			The length of the datagram
+	 * @param nanos				The time the send took
+	 */
+	public void sent(int length, long nanos)
+	{
+		datagramsOut.increment();
+		bytesOut.add(length);
+		send.record(nanos);
+	}
+	
+	/**
+	 * Counts a message handed to a proxy, and the time the proxy took.
+	 * 
+	 * @param type				The message type
+	 * @param nanos				The processing time
+	 */
+	public void processed(byte type, long nanos)
+	{
+		messages[type & 0x7F].increment();
+		process.record(nanos);
+	}
+	
+	/**
+	 * Counts an invalid message.
+	 */
+	public void decodeError()
+	{
+		decodeErrors.increment();
+	}
+	
+	/**
+	 * Counts a datagram dropped.
+	 */
+	public void dropped()
+	{
+		dropped.increment();
+	}
+	
+	/**
+	 * Counts a reply dropped because the outbound ring stayed full.
+	 */
+	public void replyDropped()
+	{
+		repliesDropped.increment();
+	}
+	
+	/**
+	 * Counts a join cookie issued.
+	 */
+	public void cookieIssued()
+	{
+		cookies.increment();
+	}
+	
+	/**
+	 * Counts a join refused while overloaded or draining.
+	 */
+	public void busy()
+	{
+		busy.increment();
+	}
+	
+	/**
+	 * Counts a player joining a session.
+	 */
+	public void joined()
+	{
+		joins.increment();
+	}
+	
+	/**
+	 * Counts a client that quit.
+	 */
+	public void quit()
+	{
+		quits.increment();
+	}
+	
+	/**
+	 * Counts a client ended for being idle.
+	 */
+	public void expired()
+	{
+		expired.increment();
+	}
+	
+	/**
+	 * Counts rounds resolved.
+	 * 
+	 * @param count				The number of rounds
+	 */
+	public void resolved(int count)
+	{
+		rounds.add(count);
+	}
+	
+	/**
+	 * Counts a client address connecting or going away.
+	 * 
+	 * @param change			1 when it connects, -1 when it goes
+	 */
+	public void connection(int change)
+	{
+		connections.add(change);
+	}
+	
+	/**
+	 * Counts a session opening or closing.
+	 * 
+	 * @param change			1 when it opens, -1 when it closes
+	 */
+	public void session(int change)
+	{
+		sessions.add(change);
+	}
+	
+	// Reading; see MetricsMXBean
+	
+	public long getDatagramsIn()
+	{
+		return datagramsIn.sum();
+	}
+	
+	public long getDatagramsOut()
+	{
+		return datagramsOut.sum();
+	}
+	
+	public long getBytesIn()
+	{
+		return bytesIn.sum();
+	}
+	
+	public long getBytesOut()
+	{
+		return bytesOut.sum();
+	}
+	
+	public Map<String, Long> getMessages()
+	{
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < messages.length; i++)
+		{
+			long count = messages[i].sum();
+			if (count > 0)
+			{
+				boolean printable = i > ' ' && i < 0x7F && i != '"' && i != '\\';
+				counts.put(printable ? String.valueOf((char) i)
+					: String.format("0x%02X", i), count);
+			}
+		}
+		return counts;
+	}
+	
+	public long getDecodeErrors()
+	{
+		return decodeErrors.sum();
+	}
+	
+	public long getDropped()
+	{
+		return dropped.sum();
+	}
+	
+	public long getRepliesDropped()
+	{
+		return repliesDropped.sum();
+	}
+	
+	public long getCookies()
+	{
+		return cookies.sum();
+	}
+	
+	public long getBusy()
+	{
+		return busy.sum();
+	}
+	
+	public long getJoins()
+	{
+		return joins.sum();
+	}
+	
+	public long getQuits()
+	{
+		return quits.sum();
+	}
+	
+	public long getExpired()
+	{
+		return expired.sum();
+	}
+	
+	public long getRounds()
+	{
+		return rounds.sum();
+	}
+	
+	public long getConnections()
+	{
+		return connections.sum();
+	}
+	
+	public long getSessions()
+	{
+		return sessions.sum();
+	}
+	
+	public Map<String, Long> getLatencies()
+	{
+		Map<String, Long> latencies = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < PERCENTILES.length; i++)
+		{
+			latencies.put("process." + PERCENTILE_NAMES[i],
+				process.getValueAtPercentile(PERCENTILES[i]));
+			latencies.put("send." + PERCENTILE_NAMES[i],
+				send.getValueAtPercentile(PERCENTILES[i]));
+		}
+		return latencies;
+	}
+	
+	/**
+	 * Writes the metrics as text, one "name value" line each, in the format
+	 * Prometheus scrapes.
+	 * 
+	 * @param out				The writer
+	 */
+	public void write(PrintWriter out)
+	{
+		counter(out, "mce_datagrams_in_total", getDatagramsIn());
+		counter(out, "mce_datagrams_out_total", getDatagramsOut());
+		counter(out, "mce_bytes_in_total", getBytesIn());
+		counter(out, "mce_bytes_out_total", getBytesOut());
+		out.print("# TYPE mce_messages_total counter\n");
+		for (Map.Entry<String, Long> entry : getMessages().entrySet())
+		{
+			out.print("mce_messages_total{type=\"" + entry.getKey() + "\"} "
+				+ entry.getValue() + "\n");
+		}
+		counter(out, "mce_decode_errors_total", getDecodeErrors());
+		counter(out, "mce_dropped_total", getDropped());
+		counter(out, "mce_replies_dropped_total", getRepliesDropped());
+		counter(out, "mce_cookies_total", getCookies());
+		counter(out, "mce_busy_total", getBusy());
+		counter(out, "mce_joins_total", getJoins());
+		counter(out, "mce_quits_total", getQuits());
+		counter(out, "mce_expired_total", getExpired());
+		counter(out, "mce_rounds_total", getRounds());
+		out.print("# TYPE mce_connections gauge\nmce_connections " + getConnections() + "\n");
+		out.print("# TYPE mce_sessions gauge\nmce_sessions " + getSessions() + "\n");
+		summary(out, "mce_process_seconds", process);
+		summary(out, "mce_send_seconds", send);
+		out.flush();
+	}
+	
+	/**
+	 * Writes one counter.
+	 */
+	private static void counter(PrintWriter out, String name, long value)
+	{
+		out.print("# TYPE " + name + " counter\n" + name + " " + value + "\n");
+	}
+	
+	/**
+	 * Writes a histogram as a summary with quantiles in seconds.
+	 */
+	private static void summary(PrintWriter out, String name,
+		LatencyHistogram histogram)
+	{
+		out.print("# TYPE " + name + " summary\n");
+		for (int i = 0; i < PERCENTILES.length; i++)
+		{
+			out.print(name + "{quantile=\"" + QUANTILES[i] + "\"} "
+				+ histogram.getValueAtPercentile(PERCENTILES[i]) / 1e9 + "\n");
+		}
+		out.print(name + "_count " + histogram.getCount() + "\n");
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Interface MetricsMXBean specifies the JMX view of the metrics of a
+ * MouseCatElephant server. Counts run from the start of the server.
+ * 
+ * @author	Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.util.Map;
+
+public interface MetricsMXBean
+{
+	/**
+	 * Gets the number of datagrams received.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getDatagramsIn();
+	
+	/**
+	 * Gets the number of datagrams sent.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getDatagramsOut();
+	
+	/**
+	 * Gets the number of bytes received.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getBytesIn();
+	
+	/**
+	 * Gets the number of bytes sent.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getBytesOut();
+	
+	/**
+	 * Gets the number of messages handed to proxies, by message type.
+	 * 
+	 * @return	counts			The counts, keyed by message letter
+	 */
+	public Map<String, Long> getMessages();
+	
+	/**
+	 * Gets the number of invalid messages, each of which ended a session.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getDecodeErrors();
+	
+	/**
+	 * Gets the number of datagrams dropped: from unknown clients without a
+	 * join, or over a client's rate limit.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getDropped();
+	
+	/**
+	 * Gets the number of replies dropped because a shard's outbound ring
+	 * stayed full.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getRepliesDropped();
+	
+	/**
+	 * Gets the number of join cookies issued.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getCookies();
+	
+	/**
+	 * Gets the number of joins refused because the server was overloaded
+	 * or draining.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getBusy();
+	
+	/**
+	 * Gets the number of players who joined a session.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getJoins();
+	
+	/**
+	 * Gets the number of clients that quit or sent an invalid message.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getQuits();
+	
+	/**
+	 * Gets the number of clients ended for being idle.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getExpired();
+	
+	/**
+	 * Gets the number of rounds resolved, counting each round of a batch.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getRounds();
+	
+	/**
+	 * Gets the number of client addresses connected now.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getConnections();
+	
+	/**
+	 * Gets the number of sessions open now.
+	 * 
+	 * @return	count			The count
+	 */
+	public long getSessions();
+	
+	/**
+	 * Gets the p50, p99 and p99.9 time in nanoseconds spent processing a
+	 * datagram and sending one.
+	 * 
+	 * @return	latencies		The latencies, keyed like "process.p99"
+	 */
+	public Map<String, Long> getLatencies();
+}
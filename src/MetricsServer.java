@@ -0,0 +1,111 @@
+/**
+ * Class MetricsServer serves the metrics of a MouseCatElephant server as
+ * plain text on a local TCP port. Each connection gets the current metrics
+ * and is closed. A request, if one is sent, is read and ignored, and the
+ * text goes back as an HTTP response, so that curl and Prometheus can
+ * scrape it as well as nc.
+ * 
+ * Connections are served one at a time on a daemon thread, away from the
+ * receive threads.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+public class MetricsServer implements Runnable
+{
+	private static final int REQUEST_MILLIS = 200;	// how long to wait for a request
+	
+	private Metrics metrics;
+	private ServerSocket listener;
+	
+	/**
+	 * Constructor for the MetricsServer object. Listens on the loopback
+	 * address only.
+	 * 
+	 * @param metrics			The metrics to serve
+	 * @param port				The port
+	 * 
+	 * @throws IOException		Thrown if the port could not be bound
+	 */
+	public MetricsServer(Metrics metrics, int port) throws IOException
+	{
+		this.metrics = metrics;
+		listener = new ServerSocket();
+		listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+	}
+	
+	/**
+	 * Starts serving on a daemon thread.
+	 */
+	public void start()
+	{
+		Thread thread = new Thread(this, "Metrics server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Serves connections until the listener is closed.
+	 */
+	public void run()
+	{
+		while (!listener.isClosed())
+		{
+			try (Socket socket = listener.accept())
+			{
+				serve(socket);
+			} catch (IOException e)
+			{
+				if (!listener.isClosed())
+					e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Closes the listener.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void close() throws IOException
+	{
+		listener.close();
+	}
+	
+	/**
+	 * Reads the request, if any, and writes the metrics.
+	 */
+	private void serve(Socket socket) throws IOException
+	{
+		socket.setSoTimeout(REQUEST_MILLIS);
+		BufferedReader in = new BufferedReader(
+			new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+		try
+		{
+			String line;
+			while ((line = in.readLine()) != null && !line.isEmpty())
+			{
+				// skip the request and its headers
+			}
+		} catch (SocketTimeoutException e) {}	// no request; just write
+		
+		PrintWriter out = new PrintWriter(
+			new OutputStreamWriter(socket.getOutputStream(), "UTF-8"));
+		out.print("HTTP/1.0 200 OK\r\n"
+			+ "Content-Type: text/plain; version=0.0.4\r\n\r\n");
+		metrics.write(out);
+		out.flush();
+	}
+}
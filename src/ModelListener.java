@@ -38,6 +38,21 @@ public interface ModelListener
 	 */
 	public void reportOutcome(int a1, int vs, int a2) throws IOException;
 	
+	/**
+	 * Report the results of a batch of rounds.
+	 * 
+	 * @param rounds			The number of rounds played
+	 * @param results			Who scored in each round, packed four to a byte
+	 *							like the choices of a batch (0 tie, 1 player 1,
+	 *							2 player 2)
+	 * @param p1Score			The score of player 1 after the batch
+	 * @param p2Score			The score of player 2 after the batch
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void reportBatch(int rounds, byte[] results, int p1Score, int p2Score)
+		throws IOException;
+	
 	/**
 	 * Report the score for a player.
 	 * 
@@ -71,4 +86,11 @@ public interface ModelListener
 	 * @param id				The session id
 	 */
 	public void setSession(int id);
+	
+	/**
+	 * Sends any reports that were held back to go out together.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void flush() throws IOException;
 }
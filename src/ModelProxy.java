@@ -12,28 +12,30 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.SocketAddress;
-import java.net.SocketTimeoutException;
 
 public class ModelProxy implements ViewListener
 {
-	private DatagramSocket mailbox;
+	private Transport transport;
 	private SocketAddress destination;
 	private ModelListener modelListener;
 	private boolean haveQuit = false;
+	private volatile String name;
+	private boolean reliable = false;
+	private ReliableChannel channel;
 
 	/**
 	 * Constructor for the model proxy object.
 	 *
-	 * @param  		socket  		The socket
+	 * @param  		transport  		The transport
+	 * @param  		destination		The server address
 	 * 
 	 * @exception 	IOException		Thrown if an I/O error occurred
 	 */
-	 public ModelProxy(DatagramSocket mailbox, SocketAddress destination)
+	 public ModelProxy(Transport transport, SocketAddress destination)
 		throws IOException
 	 {
-		this.mailbox = mailbox;
+		this.transport = transport;
 		this.destination = destination;
 	 }
 
@@ -48,9 +50,39 @@ public class ModelProxy implements ViewListener
 		this.modelListener = model;
 		new ReaderThread().start();
 	}
+	
+	/**
+	 * Ask for reliable delivery: every message after the first join travels
+	 * in an envelope, and lost messages are sent again in both directions.
+	 * Must be called before setModelListener().
+	 * 
+	 * @param	reliable		True for reliable delivery
+	 */
+	public void setReliable(boolean reliable)
+	{
+		this.reliable = reliable;
+	}
+	
+	/**
+	 * Sends a message to the server, in an envelope if delivery is reliable.
+	 * 
+	 * @param	payload			The message
+	 * 
+	 * @throws	IOException 	Thrown if an I/O error occurred
+	 */
+	private void send(byte[] payload) throws IOException
+	{
+		if (channel != null)
+		{
+			channel.send(payload, 0, payload.length);
+		} else
+			transport.send(payload, 0, payload.length, destination);
+	}
 
 	/**
-	 * Sends a join message to the server.
+	 * Sends a join message to the server. The first join carries an empty
+	 * cookie; the server answers it with a cookie, and the join is sent again
+	 * with that cookie.
 	 * 
 	 * @param	proxy			The proxy
 	 * @param	name			The name of the player joining the server
@@ -60,23 +92,42 @@ public class ModelProxy implements ViewListener
 	public void join(ViewProxy proxy, String name)
 			throws IOException
 	{	
+		this.name = name;
+		sendJoin(0);
+	}
+	
+	/**
+	 * Sends a join message carrying a cookie to the server.
+	 * 
+	 * @param	cookie			The cookie
+	 * 
+	 * @throws	IOException 	Thrown if an I/O error occurred
+	 */
+	private void sendJoin(long cookie) throws IOException
+	{
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		DataOutputStream out = new DataOutputStream(baos);
 		out.writeByte('J');
+		out.writeLong(cookie);
 		out.writeUTF(name);
 		out.close();
 		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, destination));
-		}
+		if (cookie == 0)
+		{
+			transport.send(payload, 0, payload.length, destination);
+		} else
+			send(payload);		// the server keeps state only from here on
+	}
 	
 	/**
 	 * Sends an animal selected message to the server.
 	 * 
+	 * @param	id				The ID of the player (known to the server)
 	 * @param	a				The code for the animal selected (0 mouse, 1 cat, 2 elephant)
 	 * 
 	 * @throws	IOException 	Thrown if an I/O error occurred
 	 */
-	public void selectAnimal(int a) throws IOException
+	public void selectAnimal(int id, int a) throws IOException
 	{
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		DataOutputStream out = new DataOutputStream(baos);
@@ -84,7 +135,28 @@ public class ModelProxy implements ViewListener
 		out.writeByte(a);
 		out.close();
 		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, destination));
+		send(payload);
+	}
+	
+	/**
+	 * Sends a batch of animal choices to the server.
+	 * 
+	 * @param	id				The ID of the player (known to the server)
+	 * @param	rounds			The number of rounds (1 to 255)
+	 * @param	choices			The packed animal choices
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public void selectBatch(int id, int rounds, byte[] choices) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeByte('M');
+		out.writeByte(rounds);
+		out.write(choices, 0, (rounds + 3) / 4);
+		out.close();
+		byte[] payload = baos.toByteArray();
+		send(payload);
 	}
 
 	/**
@@ -99,7 +171,7 @@ public class ModelProxy implements ViewListener
 		out.writeByte('R');
 		out.close();
 		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, destination));
+		send(payload);
 	}
 	
 	/**
@@ -124,7 +196,7 @@ public class ModelProxy implements ViewListener
 			out.writeByte('Q');
 			out.close();
 			byte[] payload = baos.toByteArray();
-			mailbox.send(new DatagramPacket(payload, payload.length, destination));
+			send(payload);
 		}
 		System.exit(i);
 	}
@@ -132,76 +204,161 @@ public class ModelProxy implements ViewListener
 	/**
 	* ReaderThread is a helper class that receives and processes messages from the network.
 	*/
-	private class ReaderThread extends Thread
+	private class ReaderThread extends Thread implements ReliableChannel.Link
 	{
+		private volatile int timeout = 5000;	// deadline for server response
+		
+		/**
+		 * Constructor for the ReaderThread. Opens the reliable channel, whose
+		 * messages this thread handles, if one was asked for.
+		 */
+		public ReaderThread()
+		{
+			if (reliable)
+			{
+				channel = new ReliableChannel(this);
+			}
+		}
+		
 		public void run()
 		{
-			byte[] payload = new byte[128];
+			byte[] payload = new byte[512];		// room for a compound datagram
 			try
 			{
-				mailbox.setSoTimeout(5000);		// set deadline for server response
 				while(true)
 				{	
 					DatagramPacket packet = new DatagramPacket(
 							payload, payload.length);
-					mailbox.receive(packet);
+					if (!transport.receive(packet, timeout))
+					{
+						System.err.println("Timeout on connecting to server.");
+						System.exit(1);
+					}
+					if (channel != null
+						&& (payload[0] == '@' || payload[0] == 'A'))
+					{
+						channel.receive(payload, 0, packet.getLength());
+						continue;
+					}
 					DataInputStream in = new DataInputStream(
 						new ByteArrayInputStream(
 							payload, 0, packet.getLength()));
 					
-					byte b = in.readByte();
-					int [] msg = new int[3];
-					String name;
-					
-					switch (b)
-					{
-						case 'I':	//ID
-							msg[0] = in.readByte();	
-							modelListener.setPlayerInfo(msg[0], null);
-							mailbox.setSoTimeout(0);	// remove deadline for server response
-							break;
-						case 'N':	//name
-							name = in.readUTF();
-							msg[0] = in.readByte();
-							modelListener.setPlayerInfo(msg[0], name);
-							break;
-						case 'S':	//score
-							msg[0] = in.readByte();
-							msg[1] = in.readByte();
-							modelListener.reportScore(msg[0], msg[1]);
-							break;
-						case 'C':	//choice
-							msg[0] = in.readByte();
-							msg[1] = in.readByte();
-							modelListener.animalSelected(msg[0], msg[1]);
-							break;
-						case 'O': 	//outcome
-							msg[0] = in.readByte();
-							msg[1] = in.readByte();
-							msg[2] = in.readByte();
-							modelListener.reportOutcome(msg[0], msg[1], msg[2]);
-							break;
-						case 'R':	//new round
-							modelListener.newRoundSelected();
-							break;
-						case 'Q':	//quit
-							quit(0);
-							break;
-						default:	//quit with errors
-							quit(1);
-							break;
-					}
+					dispatch(in.readByte(), in);
 				}
 			}
-			catch (SocketTimeoutException e)
-			{
-				System.err.println("Timeout on connecting to server.");
-				System.exit(1);
-			}
 			catch (IOException e){}
 			finally
 			{
-				mailbox.close();
+				transport.close();
+			}
+		}
+		
+		/**
+		 * Sends an envelope from the reliable channel to the server.
+		 * 
+		 * @param  data				The buffer holding the envelope
+		 * @param  offset			The offset of the envelope in the buffer
+		 * @param  length			The length of the envelope
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		public void transmit(byte[] data, int offset, int length)
+			throws IOException
+		{
+			transport.send(data, offset, length, destination);
+		}
+		
+		/**
+		 * Handles a message from the reliable channel.
+		 * 
+		 * @param  data				The buffer holding the message
+		 * @param  offset			The offset of the message in the buffer
+		 * @param  length			The length of the message
+		 * @return stop				Always 0
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		public int deliver(byte[] data, int offset, int length)
+			throws IOException
+		{
+			DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(data, offset, length));
+			dispatch(in.readByte(), in);
+			return 0;
+		}
+		
+		/**
+		 * Handles one message from the server.
+		 * 
+		 * @param  b				The message type
+		 * @param  in				The rest of the datagram
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		private void dispatch(byte b, DataInputStream in) throws IOException
+		{
+			int [] msg = new int[3];
+			String name;
+			
+			switch (b)
+			{
+				case 'U':	//compound: several messages in one datagram
+					while (in.available() > 0)
+					{
+						dispatch(in.readByte(), in);
+					}
+					break;
+				case 'I':	//ID
+					msg[0] = in.readByte();	
+					modelListener.setPlayerInfo(msg[0], null);
+					timeout = 0;	// remove deadline for server response
+					break;
+				case 'B':	//server busy
+					System.err.println("Server busy.");
+					System.exit(1);
+					break;
+				case 'K':	//join cookie
+					sendJoin(in.readLong());
+					break;
+				case 'N':	//name
+					name = in.readUTF();
+					msg[0] = in.readByte();
+					modelListener.setPlayerInfo(msg[0], name);
+					break;
+				case 'S':	//score
+					msg[0] = in.readByte();
+					msg[1] = in.readByte();
+					modelListener.reportScore(msg[0], msg[1]);
+					break;
+				case 'C':	//choice
+					msg[0] = in.readByte();
+					msg[1] = in.readByte();
+					modelListener.animalSelected(msg[0], msg[1]);
+					break;
+				case 'O': 	//outcome
+					msg[0] = in.readByte();
+					msg[1] = in.readByte();
+					msg[2] = in.readByte();
+					modelListener.reportOutcome(msg[0], msg[1], msg[2]);
+					break;
+				case 'M':	//batch results
+					msg[0] = in.readUnsignedByte();
+					byte[] results = new byte[(msg[0] + 3) / 4];
+					in.readFully(results);
+					msg[1] = in.readUnsignedShort();
+					msg[2] = in.readUnsignedShort();
+					modelListener.reportBatch(msg[0], results, msg[1], msg[2]);
+					break;
+				case 'R':	//new round
+					modelListener.newRoundSelected();
+					break;
+				case 'Q':	//quit
+					quit(0);
+					break;
+				default:	//quit with errors
+					quit(1);
+					break;
 			}
 		}
 	}
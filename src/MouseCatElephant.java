@@ -1,6 +1,7 @@
 /**
  * Class MouseCatElephant is the main program for the client side of the MouseCatElephant project.
  * The command line arguments specify the host and port for the server and client, and the name of the player.
+ * An optional <TT>-reliable</TT> after the name asks for reliable delivery of every message.
  * 
  * @author Adam Warner
  * @version 8/3/2015
@@ -17,7 +18,7 @@ public class MouseCatElephant
 	 */
 	public static void main(String[] args) throws Exception
 	{
-		if (args.length != 5) usage();
+		if (args.length != 5 && (args.length != 6 || !args[5].equals("-reliable"))) usage();
 		String serverHost = args[0];
 		String clientHost = args[2];
 		String name = args[4];
@@ -40,11 +41,12 @@ public class MouseCatElephant
 		MouseCatElephantUI view = MouseCatElephantUI.create(name);
 
 		final ModelProxy proxy = new ModelProxy(
-			mailbox, new InetSocketAddress(
+			new SocketTransport(mailbox), new InetSocketAddress(
 				serverHost, serverPort));
 		
 		model.setModelListener(view);
 		view.setViewListener(proxy);
+		proxy.setReliable(args.length == 6);
 		proxy.setModelListener(model);
 		
 		proxy.join(null, name);
@@ -55,7 +57,7 @@ public class MouseCatElephant
 	 */
 	private static void usage()
 	{
-		System.err.println("Usage: $ java MouseCatElephant <serverhost> <serverport> <clienthost> <clientport> <playername>");
+		System.err.println("Usage: $ java MouseCatElephant <serverhost> <serverport> <clienthost> <clientport> <playername> [-reliable]");
 		System.exit(1);
 	}
 }
\ No newline at end of file
@@ -88,6 +88,23 @@ public class MouseCatElephantClientState implements ModelListener
 		
 	}
 
+	/**
+	 * Handle the results of a batch of rounds by reporting the final scores.
+	 * 
+	 * @param rounds			The number of rounds played
+	 * @param results			Who scored in each round
+	 * @param p1Score			The score of player 1
+	 * @param p2Score			The score of player 2
+	 * 
+	 * @throws IOException 		Thrown if an I/O error occurred
+	 */
+	public synchronized void reportBatch(int rounds, byte[] results, int p1Score,
+		int p2Score) throws IOException
+	{
+		reportScore(0, p1Score);
+		reportScore(1, p2Score);
+	}
+	
 	/**
 	 * Handle the opposing players animal choice.
 	 * 
@@ -125,4 +142,9 @@ public class MouseCatElephantClientState implements ModelListener
 	 * Set session id.
 	 */
 	public synchronized void setSession(int id){}
+	
+	/**
+	 * Flush held back reports.
+	 */
+	public synchronized void flush(){}
 }
\ No newline at end of file
@@ -2,14 +2,24 @@
  * This class creates a generic MouseCatElephant game state object used
  * by both client and server.
  * 
+ * Both scores and both choices are packed into one long, so every update is
+ * a single compare-and-set and no accessor takes a lock. Each field is 16
+ * bits: player 1's score, player 2's score, then the two choices stored plus
+ * one so that "no selection" is zero.
+ * 
  * @author  Adam Warner
  * @version 8/5/2015
  */
+
+import java.util.concurrent.atomic.AtomicLong;
+
 public class MouseCatElephantGameState
 {
-	private int p1Score = 0, p2Score = 0;
-	private int p1Choice = -1, p2Choice = -1;
-	private String p1Name, p2Name;
+	private static final int SCORES = 0, CHOICES = 32;	// field offsets
+	private static final long FIELD = 0xFFFFL;
+	
+	private AtomicLong state = new AtomicLong(0);
+	private volatile String p1Name, p2Name;
 	
 	/**
 	 * Constructor for the MouseCatElephantGameState object.
@@ -22,13 +32,9 @@ public class MouseCatElephantGameState
 	 * @param id		The player id
 	 * @param score		The score
 	 */
-	public synchronized void setPlayerScore(int id, int score)
+	public void setPlayerScore(int id, int score)
 	{
-		if (id == 0)
-		{
-			p1Score = score;
-		} else
-			p2Score = score;
+		set(SCORES + shift(id), score);
 	}
 	
 	/**
@@ -37,16 +43,9 @@ public class MouseCatElephantGameState
 	 * @param  id			The player id
 	 * @return score		The player score		
 	 */
-	public synchronized int getPlayerScore(int id)
+	public int getPlayerScore(int id)
 	{
-		int score;
-		if (id == 0)
-		{
-			score = p1Score;
-		} else
-			score = p2Score;
-		
-		return score;
+		return (int) (state.get() >>> (SCORES + shift(id)) & FIELD);
 	}
 	
 	/**
@@ -55,13 +54,9 @@ public class MouseCatElephantGameState
 	 * @param id			The player id
 	 * @param choice		The animal (-1 no selection, 0 mouse, 1 cat, 2 elephant)
 	 */
-	public synchronized void setPlayerChoice(int id, int choice)
+	public void setPlayerChoice(int id, int choice)
 	{
-		if (id == 0)
-		{
-			p1Choice = choice;
-		} else
-			p2Choice = choice;
+		set(CHOICES + shift(id), choice + 1);
 	}
 	
 	/**
@@ -70,16 +65,9 @@ public class MouseCatElephantGameState
 	 * @param  id			The player id
 	 * @return choice		The animal (-1 no selection, 0 mouse, 1 cat, 2 elephant)
 	 */
-	public synchronized int getPlayerChoice(int id)
+	public int getPlayerChoice(int id)
 	{
-		int choice;
-		if (id == 0)
-		{
-			choice = p1Choice;
-		} else
-			choice = p2Choice;
-		
-		return choice;
+		return (int) (state.get() >>> (CHOICES + shift(id)) & FIELD) - 1;
 	}
 	
 	/**
@@ -88,7 +76,7 @@ public class MouseCatElephantGameState
 	 * @param id			The player id
 	 * @param name			The player name
 	 */
-	public synchronized void setPlayerName(int id, String name)
+	public void setPlayerName(int id, String name)
 	{
 		if (id == 0)
 		{
@@ -103,7 +91,7 @@ public class MouseCatElephantGameState
 	 * @param  id			The player id
 	 * @return name			The player name
 	 */
-	public synchronized String getPlayerName(int id)
+	public String getPlayerName(int id)
 	{
 		String name;
 		if (id == 0)
@@ -118,15 +106,33 @@ public class MouseCatElephantGameState
 	/**
 	 * Increase the score for a given player by one.
 	 * 
-	 * @param id			The player whose score is increased
+	 * @param  id			The player whose score is increased
+	 * @return score		The new score
 	 */
-	public synchronized void incrementScore(int id)
+	public int incrementScore(int id)
 	{
-		if (id == 0)
+		int shift = SCORES + shift(id);
+		long current, next;
+		do
 		{
-			p1Score++;
-		} else
-			p2Score++;
+			current = state.get();
+			next = current & ~(FIELD << shift)
+				| ((current >>> shift) + 1 & FIELD) << shift;
+		} while (!state.compareAndSet(current, next));
+		return (int) (next >>> shift & FIELD);
+	}
+	
+	/**
+	 * Clears both players' selections for a new round.
+	 */
+	public void resetChoices()
+	{
+		long current;
+		do
+		{
+			current = state.get();
+		} while (!state.compareAndSet(current, current & ~(FIELD << CHOICES
+			| FIELD << (CHOICES + 16))));
 	}
 	
 	/**
@@ -134,15 +140,31 @@ public class MouseCatElephantGameState
 	 * 
 	 * @return status		True if and only if both players have made their selections
 	 */
-	public synchronized boolean playersReady()
+	public boolean playersReady()
 	{
-		boolean status;
-		if (p1Choice != -1 && p2Choice != -1)
+		long current = state.get();
+		return (current >>> CHOICES & FIELD) != 0
+			&& (current >>> (CHOICES + 16) & FIELD) != 0;
+	}
+	
+	/**
+	 * Gets the offset of a player's field within a pair of fields.
+	 */
+	private static int shift(int id)
+	{
+		return id == 0 ? 0 : 16;
+	}
+	
+	/**
+	 * Replaces one field.
+	 */
+	private void set(int shift, int value)
+	{
+		long current, next;
+		do
 		{
-			status = true;
-		} else
-			status = false;
-			
-		return status;
+			current = state.get();
+			next = current & ~(FIELD << shift) | (value & FIELD) << shift;
+		} while (!state.compareAndSet(current, next));
 	}
 }
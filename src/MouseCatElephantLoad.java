@@ -0,0 +1,671 @@
+/**
+ * Class MouseCatElephantLoad is a headless load generator for the
+ * MouseCatElephant server. It plays thousands of simulated players from one
+ * thread: each player has its own datagram channel, or a stream of a shared
+ * one, and one selector receives for all of them. Players speak the same
+ * protocol as ModelProxy.
+ * Each player joins with the cookie handshake, plays a number of rounds and
+ * quits. Player 1 of each session asks for every new round and quits at the
+ * end, so the server's matchmaker pairs players just as it pairs people.
+ * 
+ * The command line arguments are the host and port of the server and the
+ * number of players, optionally followed by:
+ * <UL>
+ * <LI><TT>-rounds &lt;n&gt;</TT> Play n rounds in each session (default 100)
+ * <LI><TT>-pattern &lt;p&gt;</TT> Choose animals by the pattern p:
+ * <TT>mouse</TT>, <TT>cat</TT> or <TT>elephant</TT> every round,
+ * <TT>cycle</TT> through the three, or at <TT>random</TT> (the default)
+ * <LI><TT>-ramp &lt;n&gt;</TT> Start n players per second instead of all at
+ * once
+ * <LI><TT>-timeout &lt;seconds&gt;</TT> Give up when nothing has arrived for
+ * the given time (default 5); players still playing then are counted as
+ * stalled
+ * <LI><TT>-streams &lt;n&gt;</TT> Multiplex n players over each channel,
+ * one stream each, up to the server's limit of 4096 (default 1: a channel
+ * per player, with no stream headers)
+ * <LI><TT>-batch &lt;n&gt;</TT> Send the choices for up to n rounds at once
+ * in an 'M' message, from 1 to 255, instead of a 'C' for each round; the
+ * server resolves a batch once both players have sent one, with no new
+ * round messages
+ * </UL>
+ * 
+ * At the end it prints the rounds and datagrams per second, and the p50,
+ * p99 and p99.9 latency of a join (the first 'J' to the 'I'), of a round
+ * (the 'C' to the 'O'), of a new round (the 'R' to the 'R' back) and of a
+ * batch (the 'M' to the 'M' back). Each
+ * channel holds a socket, so the open file limit must be above the number of
+ * channels.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Random;
+
+public class MouseCatElephantLoad
+{
+	private static final int CYCLE = 3;
+	private static final int RANDOM = 4;
+	private static final String[] PATTERNS = {"mouse", "cat", "elephant", "cycle", "random"};
+	private static final long TICK_MILLIS = 10;
+	private static final int MAX_STREAMS = 4096;
+	private static final int MAX_BATCH = 255;
+	
+	private InetSocketAddress server;
+	private Player[] players;
+	private int rounds;
+	private int pattern;
+	private int batch;
+	private Random random = new Random();
+	private Selector selector;
+	
+	private ByteBuffer in = ByteBuffer.allocate(512);	// room for a compound datagram
+	private ByteBuffer out = ByteBuffer.allocate(128);	// room for a full batch
+	
+	private LatencyHistogram joins = new LatencyHistogram();
+	private LatencyHistogram choices = new LatencyHistogram();
+	private LatencyHistogram newRounds = new LatencyHistogram();
+	private LatencyHistogram batches = new LatencyHistogram();
+	private long received = 0;
+	private long sent = 0;
+	private long played = 0;
+	private int joined = 0;
+	private int busy = 0;
+	private int failed = 0;
+	private int finished = 0;
+	
+	/**
+	 * Main method for the MouseCatElephantLoad.
+	 * 
+	 * @param args			The command line arguments
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 3) usage();
+		
+		String host = args[0];
+		int port = 0, count = 0;
+		int rounds = 100, pattern = RANDOM, ramp = 0, timeout = 5, streams = 1;
+		int batch = 0;
+		try
+		{
+			port = Integer.parseInt(args[1]);
+			count = Integer.parseInt(args[2]);
+			for (int i = 3; i < args.length; i++)
+			{
+				if (args[i].equals("-rounds") && i + 1 < args.length)
+				{
+					rounds = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-pattern") && i + 1 < args.length)
+				{
+					pattern = patternOf(args[++i]);
+				} else if (args[i].equals("-ramp") && i + 1 < args.length)
+				{
+					ramp = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-timeout") && i + 1 < args.length)
+				{
+					timeout = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-streams") && i + 1 < args.length)
+				{
+					streams = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-batch") && i + 1 < args.length)
+				{
+					batch = Integer.parseInt(args[++i]);
+					if (batch < 1) usage();
+				} else
+					usage();
+			}
+		} catch (NumberFormatException e)
+		{
+			usage();
+		}
+		if (count < 1 || rounds < 0 || pattern < 0 || ramp < 0 || timeout < 1
+			|| streams < 1 || streams > MAX_STREAMS || batch > MAX_BATCH)
+			usage();
+		
+		MouseCatElephantLoad load = new MouseCatElephantLoad(
+			new InetSocketAddress(host, port), count, rounds, pattern, streams,
+			batch);
+		long elapsed = load.run(ramp, timeout * 1000L);
+		load.report(elapsed);
+	}
+	
+	/**
+	 * Constructor for the MouseCatElephantLoad object. Opens a channel for
+	 * each player, or for each group of players multiplexed over one.
+	 * 
+	 * @param server			The address of the server
+	 * @param count				The number of players
+	 * @param rounds			The number of rounds in each session
+	 * @param pattern			The choice pattern
+	 * @param streams			The number of players on each channel; with
+	 *							more than one, each player has a stream
+	 * @param batch				The most rounds to choose for in one batch, or
+	 *							0 to choose one round at a time
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public MouseCatElephantLoad(InetSocketAddress server, int count, int rounds,
+		int pattern, int streams, int batch) throws IOException
+	{
+		this.server = server;
+		this.rounds = rounds;
+		this.pattern = pattern;
+		this.batch = batch;
+		selector = Selector.open();
+		players = new Player[count];
+		Connection connection = null;
+		for (int i = 0; i < count; i++)
+		{
+			if (i % streams == 0)
+			{
+				connection = new Connection(Math.min(streams, count - i),
+					streams > 1);
+			}
+			players[i] = new Player("load" + i, connection);
+		}
+	}
+	
+	/**
+	 * Plays until every player has finished or nothing has arrived for the
+	 * timeout.
+	 * 
+	 * @param  ramp				The players to start per second, or 0 to start
+	 *							them all at once
+	 * @param  timeout			The timeout in milliseconds
+	 * @return elapsed			The time taken in nanoseconds
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public long run(int ramp, long timeout) throws IOException
+	{
+		long start = System.nanoTime();
+		long heard = start;
+		int started = 0;
+		while (finished < players.length)
+		{
+			long now = System.nanoTime();
+			if (started < players.length)
+			{
+				int due = (ramp == 0) ? players.length
+					: (int) Math.min(players.length, (now - start) * ramp / 1000000000L + 1);
+				while (started < due)
+				{
+					players[started++].start(now);
+				}
+			}
+			
+			selector.select(TICK_MILLIS);
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext())
+			{
+				SelectionKey key = keys.next();
+				keys.remove();
+				((Connection) key.attachment()).receive();
+				heard = System.nanoTime();
+			}
+			
+			if (started == players.length
+				&& System.nanoTime() - heard > timeout * 1000000L)
+			{
+				break;
+			}
+		}
+		long elapsed = heard - start;
+		selector.close();
+		return elapsed;
+	}
+	
+	/**
+	 * Prints the results of a run.
+	 * 
+	 * @param elapsed			The time taken in nanoseconds
+	 */
+	public void report(long elapsed)
+	{
+		double seconds = elapsed / 1e9;
+		System.out.printf("players %,d joined %,d busy %,d failed %,d stalled %,d in %.2f s%n",
+			players.length, joined, busy, failed, players.length - finished, seconds);
+		System.out.printf("rounds %,d %,.0f rounds/s datagrams %,d in %,.0f/s %,d out %,.0f/s%n",
+			played, played / seconds, received, received / seconds, sent, sent / seconds);
+		System.out.printf("%-10s %10s %10s %10s %10s %10s%n",
+			"latency", "count", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+		print("join->I", joins);
+		print("C->O", choices);
+		print("R->R", newRounds);
+		print("M->M", batches);
+	}
+	
+	/**
+	 * Prints one latency histogram.
+	 */
+	private static void print(String name, LatencyHistogram histogram)
+	{
+		System.out.printf("%-10s %,10d %10.3f %10.3f %10.3f %10.3f%n", name,
+			histogram.getCount(), histogram.getValueAtPercentile(50) / 1e6,
+			histogram.getValueAtPercentile(99) / 1e6,
+			histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMax() / 1e6);
+	}
+	
+	/**
+	 * Gets the choice pattern with the given name.
+	 * 
+	 * @param  name			The name
+	 * @return pattern		The pattern, or -1 if there is none by that name
+	 */
+	private static int patternOf(String name)
+	{
+		for (int i = 0; i < PATTERNS.length; i++)
+		{
+			if (PATTERNS[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Displays a usage message and exits the program.
+	 */
+	private static void usage()
+	{
+		System.err.println("Usage: java MouseCatElephantLoad <host> <port> <players> [-rounds <n>]"
+			+ " [-pattern mouse|cat|elephant|cycle|random] [-ramp <n>] [-timeout <seconds>]"
+			+ " [-streams <n>] [-batch <n>]");
+		System.exit(1);
+	}
+	
+	/**
+	 * Class Connection is one channel to the server and the players on it.
+	 * Its handler runs on the selector thread.
+	 */
+	private class Connection
+	{
+		private DatagramChannel channel;
+		private SelectionKey key;
+		private Player[] players;		// indexed by stream id
+		private boolean multiplexed;
+		private int attached = 0;
+		private int playing = 0;
+		
+		/**
+		 * Constructor for the Connection object. Opens its channel,
+		 * connected to the server.
+		 * 
+		 * @param count				The number of players on the channel
+		 * @param multiplexed		True to give each player a stream
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		public Connection(int count, boolean multiplexed) throws IOException
+		{
+			players = new Player[count];
+			this.multiplexed = multiplexed;
+			channel = DatagramChannel.open();
+			channel.connect(server);
+			channel.configureBlocking(false);
+			key = channel.register(selector, SelectionKey.OP_READ, this);
+		}
+		
+		/**
+		 * Adds a player to this channel.
+		 * 
+		 * @param  player			The player
+		 * @return stream			The player's stream id, or -1 if the
+		 *							channel is not multiplexed
+		 */
+		public int attach(Player player)
+		{
+			players[attached] = player;
+			playing++;
+			return multiplexed ? attached++ : -1;
+		}
+		
+		/**
+		 * Handles every datagram waiting on the channel, passing each to the
+		 * player on its stream.
+		 */
+		public void receive()
+		{
+			try
+			{
+				in.clear();
+				while (key.isValid() && channel.receive(in) != null)
+				{
+					received++;
+					in.flip();
+					Player player = players[0];
+					if (multiplexed)
+					{
+						int stream = (in.remaining() > 3 && in.get() == 'X')
+							? in.getShort() & 0xFFFF : players.length;
+						player = (stream < players.length) ? players[stream] : null;
+					}
+					if (player != null)
+					{
+						player.dispatch();
+					}
+					in.clear();
+				}
+			} catch (IOException e)
+			{
+				for (int i = 0; i < players.length; i++)
+				{
+					if (!players[i].done)
+					{
+						failed++;		// most likely the server is not there
+						players[i].finish();
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Sends a message for one of the players.
+		 * 
+		 * @param  message			The message
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		public void write(ByteBuffer message) throws IOException
+		{
+			channel.write(message);
+		}
+		
+		/**
+		 * Closes the channel once its last player has finished.
+		 */
+		public void release()
+		{
+			if (--playing > 0)
+				return;
+			
+			key.cancel();
+			try
+			{
+				channel.close();
+			} catch (IOException e) {}
+		}
+	}
+	
+	/**
+	 * Class Player is one simulated player. Its handlers run on the selector
+	 * thread and share the load generator's buffers.
+	 */
+	private class Player
+	{
+		private Connection connection;
+		private int stream;
+		private boolean done = false;
+		private byte[] name;
+		private int id = -1;
+		private int round = 0;
+		private long joinStart;
+		private long choiceStart;
+		private long roundStart = 0;
+		
+		/**
+		 * Constructor for the Player object.
+		 * 
+		 * @param name				The name of the player
+		 * @param connection		The channel the player plays over
+		 * 
+		 * @throws IOException		Thrown if an I/O error occurred
+		 */
+		public Player(String name, Connection connection) throws IOException
+		{
+			this.name = name.getBytes("UTF-8");
+			this.connection = connection;
+			stream = connection.attach(this);
+		}
+		
+		/**
+		 * Sends the first join.
+		 * 
+		 * @param now				The time in nanoseconds
+		 */
+		public void start(long now)
+		{
+			joinStart = now;
+			sendJoin(0);
+		}
+		
+		/**
+		 * Handles the messages in one datagram, after its stream header.
+		 */
+		public void dispatch()
+		{
+			int skip, count;
+			while (in.hasRemaining() && !done)
+			{
+				byte b = in.get();
+				switch (b)
+				{
+					case 'U':	//compound: the messages follow
+						break;
+					case 'K':	//join cookie
+						sendJoin(in.getLong());
+						break;
+					case 'B':	//server busy
+						busy++;
+						finish();
+						break;
+					case 'I':	//ID
+						id = in.get();
+						joined++;
+						joins.record(System.nanoTime() - joinStart);
+						break;
+					case 'N':	//name
+						skip = in.getShort() + 1;
+						in.position(in.position() + skip);
+						break;
+					case 'S':	//score
+					case 'C':	//choice
+						in.position(in.position() + 2);
+						break;
+					case 'O':	//outcome
+						in.position(in.position() + 3);
+						outcome();
+						break;
+					case 'M':	//batch results
+						count = in.get() & 0xFF;
+						in.position(in.position() + (count + 3) / 4 + 4);
+						batchPlayed(count);
+						break;
+					case 'R':	//new round
+						newRound();
+						break;
+					case 'Q':	//quit
+						finish();
+						break;
+					default:	//not a message we know; drop the datagram
+						in.position(in.limit());
+						break;
+				}
+			}
+		}
+		
+		/**
+		 * Chooses an animal for the new round, or a batch of them, or quits
+		 * after the last.
+		 */
+		private void newRound()
+		{
+			long now = System.nanoTime();
+			if (roundStart != 0)
+			{
+				newRounds.record(now - roundStart);
+				roundStart = 0;
+			}
+			
+			if (round < rounds && batch > 0)
+			{
+				sendBatch(now);
+			} else if (round < rounds)
+			{
+				choiceStart = now;
+				begin();
+				out.put((byte) 'C').put((byte) choose(round));
+				send();
+			} else if (id == 0)
+			{
+				sendQuit();
+			}
+		}
+		
+		/**
+		 * Records a batch of rounds and sends the next batch, or, for player
+		 * 1, quits after the last.
+		 * 
+		 * @param count				The number of rounds the server played
+		 */
+		private void batchPlayed(int count)
+		{
+			long now = System.nanoTime();
+			batches.record(now - choiceStart);
+			round += count;
+			if (id == 0)
+			{
+				played += count;
+			}
+			
+			if (round < rounds)
+			{
+				sendBatch(now);
+			} else if (id == 0)
+			{
+				sendQuit();
+			}
+		}
+		
+		/**
+		 * Chooses an animal by the choice pattern.
+		 * 
+		 * @param  round			The round to choose for
+		 * @return animal			The animal
+		 */
+		private int choose(int round)
+		{
+			if (pattern == CYCLE)
+				return (round + id) % 3;
+			if (pattern == RANDOM)
+				return random.nextInt(3);
+			return pattern;
+		}
+		
+		/**
+		 * Records a round and, for player 1, asks for the next one.
+		 */
+		private void outcome()
+		{
+			long now = System.nanoTime();
+			choices.record(now - choiceStart);
+			round++;
+			if (id != 0)
+				return;
+			
+			played++;
+			if (round < rounds)
+			{
+				roundStart = now;
+				begin();
+				out.put((byte) 'R');
+				send();
+			} else
+				sendQuit();
+		}
+		
+		/**
+		 * Sends a join message carrying a cookie.
+		 */
+		private void sendJoin(long cookie)
+		{
+			begin();
+			out.put((byte) 'J').putLong(cookie);
+			out.putShort((short) name.length).put(name);
+			send();
+		}
+		
+		/**
+		 * Sends the choices for the next batch of rounds, four to a byte.
+		 * 
+		 * @param now				The time in nanoseconds
+		 */
+		private void sendBatch(long now)
+		{
+			int count = Math.min(batch, rounds - round);
+			choiceStart = now;
+			begin();
+			out.put((byte) 'M').put((byte) count);
+			for (int i = 0; i < count; i += 4)
+			{
+				int packed = 0;
+				for (int j = i; j < count && j < i + 4; j++)
+				{
+					packed |= choose(round + j) << ((j & 3) << 1);
+				}
+				out.put((byte) packed);
+			}
+			send();
+		}
+		
+		/**
+		 * Sends a quit message.
+		 */
+		private void sendQuit()
+		{
+			begin();
+			out.put((byte) 'Q');
+			send();
+		}
+		
+		/**
+		 * Starts a message in the output buffer, after the stream header if
+		 * the player has a stream.
+		 */
+		private void begin()
+		{
+			out.clear();
+			if (stream >= 0)
+			{
+				out.put((byte) 'X').putShort((short) stream);
+			}
+		}
+		
+		/**
+		 * Sends the message in the output buffer.
+		 */
+		private void send()
+		{
+			out.flip();
+			try
+			{
+				connection.write(out);
+				sent++;
+			} catch (IOException e)
+			{
+				failed++;
+				finish();
+			}
+		}
+		
+		/**
+		 * Stops playing, and closes the channel if no one else is on it.
+		 */
+		private void finish()
+		{
+			if (done)
+				return;
+			
+			done = true;
+			finished++;
+			connection.release();
+		}
+	}
+}
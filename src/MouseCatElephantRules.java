@@ -0,0 +1,44 @@
+/**
+ * This class provides the standard rules for the MouseCatElephant game: the
+ * cat eats the mouse, the mouse frightens the elephant and the elephant
+ * stomps the cat.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+public class MouseCatElephantRules implements OutcomeRules
+{
+	// animal codes: mouse = 0, cat = 1, elephant = 2
+	// vs codes: ties = 0, frightens = 1, eats = 2, stomps = 3
+	private static final int[] PREY = {2, 0, 1};	// the animal each animal defeats
+	private static final int[] VERB = {1, 2, 3};	// and how it defeats it
+	
+	/**
+	 * Constructor for the MouseCatElephantRules object.
+	 */
+	public MouseCatElephantRules(){}
+	
+	/**
+	 * Gets the number of animals.
+	 * 
+	 * @return count			The number of animals
+	 */
+	public int getAnimalCount()
+	{
+		return 3;
+	}
+	
+	/**
+	 * Tests whether one animal defeats another.
+	 * 
+	 * @param  animal			The animal that may win
+	 * @param  other			The animal that may lose
+	 * @return vs				The interaction, or 0 if the animal does not win
+	 */
+	public int defeats(int animal, int other)
+	{
+		if (PREY[animal] == other)
+			return VERB[animal];
+		return 0;
+	}
+}
@@ -1,22 +1,63 @@
 /**
  * Class MouseCatElephantServer is the main program for the server side of the MouseCatElephant project.
- * The command line arguments specify the host and port for the server.
+ * The command line arguments specify the host and port for the server,
+ * optionally followed by transport options:
+ * <UL>
+ * <LI><TT>-nio</TT> Serve from a non-blocking datagram channel and selector
+ * <LI><TT>-shards &lt;n&gt;</TT> Bind n sockets to the port with SO_REUSEPORT,
+ * each served by its own receive thread, mailbox manager and sessions
+ * <LI><TT>-actors</TT> Run each session as an actor on a thread pool with one
+ * thread per core, leaving the receive thread to decode and enqueue
+ * <LI><TT>-idle &lt;seconds&gt;</TT> End the session of any client that has
+ * sent nothing for the given time
+ * <LI><TT>-rate &lt;n&gt;</TT> Drop messages from any client, or any stream
+ * of a multiplexing client, sending more than n per second, allowing bursts
+ * of n
+ * <LI><TT>-busy &lt;micros&gt;</TT> Refuse new players while the average time
+ * to process a datagram is above the given number of microseconds, counting
+ * the time a message waits on its session actor and a reply on the ring
+ * <LI><TT>-ring &lt;n&gt;</TT> Queue replies on a ring of n messages, sent by
+ * a writer thread for each shard
+ * <LI><TT>-compound</TT> Send the reports from each game event to a player
+ * in one compound datagram
+ * <LI><TT>-metrics &lt;port&gt;</TT> Count datagrams, messages, sessions and
+ * processing times; publish the counts over JMX and as text on the given
+ * port of the loopback interface
+ * <LI><TT>-admin &lt;port&gt;</TT> Answer queries about sessions, waiting
+ * players and connections, and drain the server, on the given port of the
+ * loopback interface; see AdminServer
+ * </UL>
  * 
  * @author  Adam Warner
  * @version 8/4/2015
  */
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.DatagramSocket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MouseCatElephantServer
 {
 
 	public static void main(String[] args) throws Exception 
 	{
-		if (args.length != 2) usage();
+		if (args.length < 2) usage();
 		String host = args[0];
 		int port = 0;
+		boolean nio = false;
+		int shards = 1;
+		boolean actors = false;
+		int idle = 0;
+		int rate = 0;
+		int busy = 0;
+		int ring = 0;
+		boolean compound = false;
+		int metricsPort = -1;
+		int adminPort = -1;
 		
 		try
 		{
@@ -27,24 +68,220 @@ public class MouseCatElephantServer
 			System.exit(1);
 		}
 		
-		DatagramSocket mailbox = new DatagramSocket(
-			new InetSocketAddress (host, port));
+		for (int i = 2; i < args.length; i++)
+		{
+			if (args[i].equals("-nio"))
+			{
+				nio = true;
+			} else if (args[i].equals("-shards") && i + 1 < args.length)
+			{
+				try
+				{
+					shards = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (shards < 1) usage();
+			} else if (args[i].equals("-actors"))
+			{
+				actors = true;
+			} else if (args[i].equals("-idle") && i + 1 < args.length)
+			{
+				try
+				{
+					idle = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (idle < 1) usage();
+			} else if (args[i].equals("-rate") && i + 1 < args.length)
+			{
+				try
+				{
+					rate = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (rate < 1) usage();
+			} else if (args[i].equals("-busy") && i + 1 < args.length)
+			{
+				try
+				{
+					busy = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (busy < 1) usage();
+			} else if (args[i].equals("-ring") && i + 1 < args.length)
+			{
+				try
+				{
+					ring = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (ring < 1 || ring > (1 << 20)) usage();
+			} else if (args[i].equals("-compound"))
+			{
+				compound = true;
+			} else if (args[i].equals("-metrics") && i + 1 < args.length)
+			{
+				try
+				{
+					metricsPort = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (metricsPort < 0 || metricsPort > 65535) usage();
+			} else if (args[i].equals("-admin") && i + 1 < args.length)
+			{
+				try
+				{
+					adminPort = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e)
+				{
+					usage();
+				}
+				if (adminPort < 0 || adminPort > 65535) usage();
+			} else
+				usage();
+		}
+		
+		InetSocketAddress address = new InetSocketAddress (host, port);
+		SessionManager[] sessionManagers = SessionManager.createShards(shards);
+		if (actors)
+		{
+			ExecutorService pool = Executors.newFixedThreadPool(
+				Runtime.getRuntime().availableProcessors());
+			for (SessionManager sessionManager : sessionManagers)
+			{
+				sessionManager.setExecutor(pool);
+			}
+		}
+		Metrics metrics = null;
+		if (metricsPort >= 0)
+		{
+			metrics = new Metrics();
+			metrics.register();
+			new MetricsServer(metrics, metricsPort).start();
+			for (SessionManager sessionManager : sessionManagers)
+			{
+				sessionManager.setMetrics(metrics);
+			}
+		}
+		MailboxManager[] managers = new MailboxManager[shards];
+		OverloadGovernor governor = null;
+		if (busy > 0)
+		{
+			governor = new OverloadGovernor(busy * 1000L);
+		}
+		for (int i = 0; i < shards; i++)
+		{
+			Transport transport;
+			if (nio)
+			{
+				DatagramChannel channel = DatagramChannel.open();
+				if (shards > 1)
+				{
+					channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+				}
+				channel.bind(address);
+				transport = new ChannelTransport(channel);
+			} else
+			{
+				DatagramSocket mailbox = new DatagramSocket(null);
+				if (shards > 1)
+				{
+					mailbox.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+				}
+				mailbox.bind(address);
+				transport = new SocketTransport(mailbox);
+			}
+			if (metrics != null)
+			{
+				transport = new MeteredTransport(transport, metrics);
+			}
+			managers[i] = new MailboxManager(transport);
+			managers[i].setMetrics(metrics);
+			managers[i].setSessionManager(sessionManagers[i]);
+			if (idle > 0)
+			{
+				managers[i].setIdleTimeout(idle);
+			}
+			if (rate > 0)
+			{
+				managers[i].setRateLimiter(new RateLimiter(rate, rate));
+			}
+			managers[i].setOverloadGovernor(governor);
+			if (ring > 0)
+			{
+				managers[i].setOutboundRing(ring);
+			}
+			managers[i].setCompound(compound);
+		}
 		
-		MailboxManager manager = new MailboxManager(mailbox);
+		if (adminPort >= 0)
+		{
+			AdminServer admin = new AdminServer(sessionManagers, managers, adminPort);
+			admin.setMetrics(metrics);
+			admin.start();
+		}
+		
+		for (int i = 1; i < shards; i++)
+		{
+			new ShardThread(managers[i]).start();
+		}
 		
 		for(;;)
 		{
-			manager.receiveMessage();
+			managers[0].receiveMessage();
 		}
 
 	}
 	
+	/**
+	 * ShardThread is a helper class that runs the receive loop for one shard.
+	 */
+	private static class ShardThread extends Thread
+	{
+		private MailboxManager manager;
+		
+		public ShardThread(MailboxManager manager)
+		{
+			this.manager = manager;
+		}
+		
+		public void run()
+		{
+			try
+			{
+				for(;;)
+				{
+					manager.receiveMessage();
+				}
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+	}
+	
 	/**
 	 * Displays a usage message and exits the program.
 	 */
 	private static void usage()
 	{
-		System.err.println("Usage: java MouseCatElephantServer <host> <port>");
+		System.err.println("Usage: java MouseCatElephantServer <host> <port> [-nio] [-shards <n>] [-actors] [-idle <seconds>]"
+			+ " [-rate <n>] [-busy <micros>] [-ring <n>] [-compound]"
+			+ " [-metrics <port>] [-admin <port>]");
 		System.exit(1);
 	}
 }
\ No newline at end of file
@@ -6,35 +6,139 @@
  */
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 public class MouseCatElephantServerState implements ViewListener 
 {
-	private ModelListener p1Listener, p2Listener;
+	/** The most animals a batch of choices can name: a choice has two bits. */
+	public static final int BATCH_ANIMALS = 4;
+	
+	// Written under this session's lock, and volatile for describe()
+	private volatile ModelListener p1Listener, p2Listener;
+	private volatile boolean ended = false;
 	
 	private int p1ID, p2ID;
+	private int session;
+	private boolean p1Joined, p2Joined, playing;
+	private Executor actor;
+	private Metrics metrics;
+	private OutcomeTable outcomes = OutcomeTable.STANDARD;
+	private byte[] p1Batch, p2Batch;
+	private int p1Rounds, p2Rounds;
 	private MouseCatElephantGameState game = new MouseCatElephantGameState();
 
 	/**
 	 * Constructor for the MouseCatElephantServerState object.
+	 * 
+	 * @param session		The session id
 	 */
-	public MouseCatElephantServerState(){}
+	public MouseCatElephantServerState(int session)
+	{
+		this.session = session;
+	}
+	
+	/**
+	 * Gets the session id.
+	 * 
+	 * @return session		The session id
+	 */
+	public int getSession()
+	{
+		return session;
+	}
+	
+	/**
+	 * Describes this session for a server snapshot. The session's lock is
+	 * not taken, so that the description never holds up a round; fields are
+	 * read as they stand and may be a round behind. Every field read is
+	 * volatile, so the description is never of a half-built session.
+	 * 
+	 * @return session		The description
+	 */
+	public ServerSnapshot.Session describe()
+	{
+		int players = p2Listener != null ? 2 : p1Listener != null ? 1 : 0;
+		return new ServerSnapshot.Session(session, players,
+			game.getPlayerName(0), game.getPlayerScore(0),
+			game.getPlayerName(1), game.getPlayerScore(1), ended);
+	}
+	
+	/**
+	 * Tells whether a proxy is one of this session's players.
+	 * 
+	 * @param  proxy		The proxy
+	 * @return player		True if the proxy joined this session
+	 */
+	public boolean hasPlayer(ViewProxy proxy)
+	{
+		return p1Listener == proxy || p2Listener == proxy;
+	}
+	
+	/**
+	 * Counts the rounds this session resolves in the given metrics.
+	 * 
+	 * @param metrics		The metrics
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Sets the actor that runs this session's messages.
+	 * 
+	 * @param actor			The session actor
+	 */
+	public void setActor(Executor actor)
+	{
+		this.actor = actor;
+	}
+	
+	/**
+	 * Gets the actor that runs this session's messages.
+	 * 
+	 * @return actor		The session actor, or null if messages run inline
+	 */
+	public Executor getActor()
+	{
+		return actor;
+	}
+	
+	/**
+	 * Sets the rules used to resolve rounds. A batch carries two bits per
+	 * choice, so with rules of more than BATCH_ANIMALS animals rounds can
+	 * only be played one at a time, and batches are ignored.
+	 * 
+	 * @param outcomes		The compiled rules
+	 */
+	public void setOutcomeTable(OutcomeTable outcomes)
+	{
+		this.outcomes = outcomes;
+	}
 	
 	/**
 	 * Set the model listeners for this object. 
 	 * 
 	 * @param ml		The model listener object
+	 * @return added	False if the session has already ended
 	 */
-	public synchronized void addModelListener(ModelListener ml)
+	public synchronized boolean addModelListener(ModelListener ml)
 	{
+		if (ended)
+			return false;
+		
 		if (p1Listener == null)
 		{
 			p1Listener = ml;
 		} else
 			p2Listener = ml;
+		return true;
 	}
 	
 	/**
-	 * Join a game.
+	 * Join a game. The game starts once both players have joined, in
+	 * whichever order their joins arrive; player 2 can take the session
+	 * before player 1's join has run.
 	 * 
 	 * @param proxy			The ViewProxy reference
 	 * @param name			The name of the player
@@ -50,10 +154,17 @@ public class MouseCatElephantServerState implements ViewListener
 			// provide name and score for player 1
 			p1Listener.setPlayerInfo(p1ID, game.getPlayerName(p1ID));
 			p1Listener.reportScore(p1ID, game.getPlayerScore(p1ID));
+			p1Joined = true;
 		} else if (p2Listener == proxy)
 		{
 			p2ID = 1;
 			game.setPlayerName(p2ID, name);
+			p2Joined = true;
+		}
+		
+		if (p1Joined && p2Joined && !playing)
+		{
+			playing = true;
 			
 			// provide name and score for player 2 to player 1
 			p1Listener.setPlayerInfo(p2ID, game.getPlayerName(p2ID));
@@ -67,25 +178,34 @@ public class MouseCatElephantServerState implements ViewListener
 			
 			newRound();
 		}
+		
+		flush();
 	}
 	
 	/**
 	 * Handle animal selection message.
 	 * 
+	 * @param  id				The ID of the player making the selection
 	 * @param  animal			The code for the animal selected
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	public synchronized void selectAnimal(int animal) throws IOException
+	public synchronized void selectAnimal(int id, int animal) throws IOException
 	{
-		if (animal < 3)
+		if (ended || !playing)
+			return;		// the session is over, or has not started
+		
+		if (animal < 0 || animal >= outcomes.getAnimalCount())
+			return;		// not an animal the rules know about
+		
+		if (id == p1ID)
 		{
 			game.setPlayerChoice(p1ID, animal);
 			p1Listener.animalSelected(p1ID, game.getPlayerChoice(p1ID));
 			p2Listener.animalSelected(p1ID, game.getPlayerChoice(p1ID));
 		} else
 		{
-			game.setPlayerChoice(p2ID, (animal - 3));
+			game.setPlayerChoice(p2ID, animal);
 			p1Listener.animalSelected(p2ID, game.getPlayerChoice(p2ID));
 			p2Listener.animalSelected(p2ID, game.getPlayerChoice(p2ID));
 		}
@@ -94,8 +214,49 @@ public class MouseCatElephantServerState implements ViewListener
 		{
 			determineOutcome();
 		}		
+		
+		flush();
 	}
 
+	/**
+	 * Handle a batch of animal selections. Once both players have sent a
+	 * batch, all of its rounds are resolved at once.
+	 * 
+	 * @param  id				The ID of the player making the selections
+	 * @param  rounds			The number of rounds
+	 * @param  choices			The packed animal choices
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public synchronized void selectBatch(int id, int rounds, byte[] choices)
+		throws IOException
+	{
+		if (ended || !playing || outcomes.getAnimalCount() > BATCH_ANIMALS)
+			return;
+		for (int i = 0; i < rounds; i++)
+		{
+			if (choiceAt(choices, i) >= outcomes.getAnimalCount())
+				return;		// not an animal the rules know about
+		}
+		
+		if (id == p1ID)
+		{
+			p1Batch = choices;
+			p1Rounds = rounds;
+		} else
+		{
+			p2Batch = choices;
+			p2Rounds = rounds;
+		}
+		
+		if (p1Batch != null && p2Batch != null)
+		{
+			determineBatch();
+		}
+		
+		flush();
+	}
+	
 	/**
 	 * Send out a new round message.
 	 * 
@@ -103,14 +264,14 @@ public class MouseCatElephantServerState implements ViewListener
 	 */
 	public synchronized void newRound() throws IOException 
 	{
-		if (p2Listener != null)
+		if (playing && !ended)
 		{
 			p1Listener.newRoundSelected();
 			p2Listener.newRoundSelected();
 			
 			//reset selections
-			game.setPlayerChoice(p1ID, -1);
-			game.setPlayerChoice(p2ID, -1);
+			game.resetChoices();
+			flush();
 		}
 	}
 
@@ -126,9 +287,81 @@ public class MouseCatElephantServerState implements ViewListener
 		if (i != 0)
 			System.out.println("Invalid message from client.");
 		
+		ended = true;
 		p1Listener.quit();
 		if (p2Listener != null)
 			p2Listener.quit();
+		
+		flush();
+	}
+	
+	/**
+	 * Sends the reports held back by each player's listener, so that the
+	 * reports from one event reach each player in one datagram.
+	 * 
+	 * @throws IOException			Thrown if an I/O error occurred
+	 */
+	private void flush() throws IOException
+	{
+		p1Listener.flush();
+		if (p2Listener != null)
+			p2Listener.flush();
+	}
+	
+	/**
+	 * Determine the results of a batch of rounds in one pass, update the
+	 * scores and report them. If the batches differ in length, only the
+	 * rounds both players chose for are played.
+	 * 
+	 * @throws IOException			Thrown if an I/O error occurred
+	 */
+	private void determineBatch() throws IOException
+	{
+		ServerEvents.Round event = null;
+		if (ServerEvents.Round.enabled())
+		{
+			event = new ServerEvents.Round();
+			event.begin();
+		}
+		int rounds = Math.min(p1Rounds, p2Rounds);
+		byte[] results = new byte[(rounds + 3) / 4];
+		int p1Wins = 0, p2Wins = 0;
+		for (int i = 0; i < rounds; i++)
+		{
+			int scorer = OutcomeTable.getScorer(outcomes.lookup(
+				choiceAt(p1Batch, i), choiceAt(p2Batch, i)));
+			results[i >> 2] |= scorer << ((i & 3) << 1);
+			p1Wins += scorer & OutcomeTable.P1_SCORES;
+			p2Wins += scorer >> 1;
+		}
+		p1Batch = null;
+		p2Batch = null;
+		
+		game.setPlayerScore(p1ID, game.getPlayerScore(p1ID) + p1Wins);
+		game.setPlayerScore(p2ID, game.getPlayerScore(p2ID) + p2Wins);
+		int p1Score = game.getPlayerScore(p1ID);
+		int p2Score = game.getPlayerScore(p2ID);
+		p1Listener.reportBatch(rounds, results, p1Score, p2Score);
+		p2Listener.reportBatch(rounds, results, p1Score, p2Score);
+		if (metrics != null)
+		{
+			metrics.resolved(rounds);
+		}
+		if (event != null && event.shouldCommit())
+		{
+			event.session = session;
+			event.opcode = 'M';
+			event.rounds = rounds;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Gets one round's choice from a packed batch.
+	 */
+	private static int choiceAt(byte[] choices, int round)
+	{
+		return choices[round >> 2] >> ((round & 3) << 1) & 3;
 	}
 	
 	/**
@@ -138,72 +371,46 @@ public class MouseCatElephantServerState implements ViewListener
 	 */
 	private synchronized void determineOutcome() throws IOException
 	{
-		// animal codes: mouse = 0, cat = 1, elephant = 2
-		// vs codes: ties = 0, frightens = 1, eats = 2, stomps = 3
-		int animal1 = 0, animal2 = 0, vs = 0;
-		int score = 0;
-		
-		int p1Choice = game.getPlayerChoice(p1ID);
-		int p2Choice = game.getPlayerChoice(p2ID);
-		
-		// test for outcomes
-		if (p1Choice == p2Choice)	//check for ties		
-		{
-			animal1 = p1Choice;
-			animal2 = p2Choice;
-		} else if (p1Choice == 0 && p2Choice == 1) //mouse vs cat
-		{
-			animal1 = 1;
-			vs = 2;
-			animal2 = 0;
-			score = 2;
-		} else if (p1Choice == 0 && p2Choice == 2) //mouse vs elephant
-		{
-			animal1 = 0;
-			vs = 1;
-			animal2 = 2;
-			score = 1;
-		} else if (p1Choice == 1 && p2Choice == 0) //cat vs mouse
-		{
-			animal1 = 1;
-			vs = 2;
-			animal2 = 0;
-			score = 1;
-		} else if (p1Choice == 1 && p2Choice == 2) //cat vs elephant
-		{
-			animal1 = 2;
-			vs = 3;
-			animal2 = 1;
-			score = 2;
-		} else if (p1Choice == 2 && p2Choice == 0) //elephant vs mouse
-		{
-			animal1 = 0;
-			vs = 1;
-			animal2 = 2;
-			score = 2;
-		} else //elephant vs cat
-		{
-			animal1 = 2;
-			vs = 3;
-			animal2 = 1;
-			score = 1;
+		ServerEvents.Round event = null;
+		if (ServerEvents.Round.enabled())
+		{
+			event = new ServerEvents.Round();
+			event.begin();
 		}
+		int outcome = outcomes.lookup(game.getPlayerChoice(p1ID),
+			game.getPlayerChoice(p2ID));
+		int animal1 = OutcomeTable.getAnimal1(outcome);
+		int vs = OutcomeTable.getVs(outcome);
+		int animal2 = OutcomeTable.getAnimal2(outcome);
+		int score = OutcomeTable.getScorer(outcome);
 		
 		// report outcome to clients
 		p1Listener.reportOutcome(animal1, vs, animal2);
 		p2Listener.reportOutcome(animal1, vs, animal2);
+		if (metrics != null)
+		{
+			metrics.resolved(1);
+		}
 		
 		// update score and report any change to clients
-		if (score == 1)
+		if (score == OutcomeTable.P1_SCORES)
 		{
-			game.incrementScore(p1ID);
-			p1Listener.reportScore(p1ID, game.getPlayerScore(p1ID));
-			p2Listener.reportScore(p1ID, game.getPlayerScore(p1ID));
-		} else if (score == 2)
+			int newScore = game.incrementScore(p1ID);
+			p1Listener.reportScore(p1ID, newScore);
+			p2Listener.reportScore(p1ID, newScore);
+		} else if (score == OutcomeTable.P2_SCORES)
 		{
-			game.incrementScore(p2ID);
-			p1Listener.reportScore(p2ID, game.getPlayerScore(p2ID));
-			p2Listener.reportScore(p2ID, game.getPlayerScore(p2ID));
+			int newScore = game.incrementScore(p2ID);
+			p1Listener.reportScore(p2ID, newScore);
+			p2Listener.reportScore(p2ID, newScore);
+		}
+		
+		if (event != null && event.shouldCommit())
+		{
+			event.session = session;
+			event.opcode = 'C';
+			event.rounds = 1;
+			event.commit();
 		}
 	}
 }
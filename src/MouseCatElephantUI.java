@@ -355,7 +355,7 @@ public class MouseCatElephantUI implements ModelListener
 	{		
 		try 
 		{
-			viewListener.selectAnimal(a);
+			viewListener.selectAnimal(0, a);	// the server knows which player this is
 		} catch (IOException e) 
 		{
 			e.printStackTrace();
@@ -504,4 +504,15 @@ public class MouseCatElephantUI implements ModelListener
 	 * Set session id.
 	 */
 	public synchronized void setSession(int id){}
+	
+	/**
+	 * Batch results; the client state reports their scores.
+	 */
+	public synchronized void reportBatch(int rounds, byte[] results, int p1Score,
+		int p2Score){}
+	
+	/**
+	 * Flush held back reports.
+	 */
+	public synchronized void flush(){}
 	}
\ No newline at end of file
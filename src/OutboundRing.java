@@ -0,0 +1,241 @@
+/**
+ * Class OutboundRing queues the datagrams a MouseCatElephant server shard
+ * sends, so that game logic never waits on a socket. Any thread may publish
+ * a datagram; one writer thread drains the ring and makes the sends.
+ * 
+ * The ring is a fixed array of preallocated slots, in the style of a
+ * Disruptor. A producer claims the next sequence number with one atomic
+ * increment, copies its datagram into that slot and marks the slot with its
+ * sequence number to publish it. The writer sends slots in sequence order
+ * as long as they are published, so a burst of datagrams costs it one
+ * wake-up. When the writer has caught up it spins briefly and then parks
+ * until the next publish.
+ * 
+ * A producer claims a slot only once the writer has freed one. Producers
+ * call from game logic, holding their session's and proxy's monitors, so one
+ * that finds the ring full spins briefly, then naps, and if no slot has come
+ * free within a millisecond it drops the datagram and counts it in the
+ * metrics. A dropped reply is lost as the network might have lost it, and a
+ * client that sends envelopes gets it again.
+ * 
+ * Given an overload governor, the ring stamps each datagram as it is
+ * published and the writer reports how long it took to be sent.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class OutboundRing implements Runnable
+{
+	/** The largest datagram that can be queued. */
+	public static final int SLOT_SIZE = 512;
+	
+	private static final int SPINS = 1000;	// empty polls before the writer parks
+	private static final int FULL_SPINS = 100;		// polls of a full ring before napping
+	private static final long FULL_NAP = 10000;		// nanoseconds per nap
+	private static final long FULL_WAIT = 1000000;	// nanoseconds before dropping
+	
+	// Preallocated slots
+	private byte[][] data;
+	private int[] lengths;
+	private SocketAddress[] targets;
+	private long[] times;		// when each slot was published, for the governor
+	private AtomicLongArray published;		// the sequence last published in each slot
+	private int mask;
+	
+	private AtomicLong claimed = new AtomicLong(-1);
+	private volatile long sent = -1;
+	
+	private Transport transport;
+	private OverloadGovernor governor;
+	private Metrics metrics;
+	private Thread writer;
+	private volatile boolean parked = false;
+	
+	/**
+	 * Constructor for the OutboundRing object.
+	 * 
+	 * @param transport			The transport for the server
+	 * @param size				The number of slots, rounded up to a power of two
+	 */
+	public OutboundRing(Transport transport, int size)
+	{
+		this.transport = transport;
+	
+		int slots = 1;
+		while (slots < size)
+		{
+			slots <<= 1;
+		}
+		mask = slots - 1;
+		data = new byte[slots][SLOT_SIZE];
+		lengths = new int[slots];
+		targets = new SocketAddress[slots];
+		times = new long[slots];
+		published = new AtomicLongArray(slots);
+		for (int i = 0; i < slots; i++)
+		{
+			published.set(i, -1);
+		}
+	}
+	
+	/**
+	 * Reports how long each datagram waited on the ring and took to send to
+	 * an overload governor. Call before start().
+	 * 
+	 * @param governor			The overload governor, or null
+	 */
+	public void setOverloadGovernor(OverloadGovernor governor)
+	{
+		this.governor = governor;
+	}
+	
+	/**
+	 * Counts the datagrams dropped because the ring stayed full. Call before
+	 * start().
+	 * 
+	 * @param metrics			The metrics, or null to count nothing
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Starts the writer thread.
+	 */
+	public void start()
+	{
+		writer = new Thread(this, "OutboundRing writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Queues a datagram. The payload is copied, so the caller may reuse it as
+	 * soon as this returns. If the ring stays full the datagram is dropped.
+	 * 
+	 * @param  payload			The buffer holding the datagram
+	 * @param  offset			The offset of the datagram in the buffer
+	 * @param  length			The length of the datagram
+	 * @param  target			The address to send it to
+	 * @return queued			False if it was dropped
+	 * 
+	 * @throws IllegalArgumentException		Thrown if the datagram does not
+	 *										fit in a slot
+	 */
+	public boolean publish(byte[] payload, int offset, int length,
+		SocketAddress target)
+	{
+		if (length > SLOT_SIZE)
+			throw new IllegalArgumentException("Datagram too long: " + length);
+		
+		long sequence;
+		int polls = 0;
+		long deadline = 0;
+		for (;;)
+		{
+			long last = claimed.get();
+			if (last + 1 - sent <= data.length)
+			{
+				if (claimed.compareAndSet(last, last + 1))
+				{
+					sequence = last + 1;
+					break;
+				}
+			} else if (polls < FULL_SPINS)
+			{
+				polls++;
+				Thread.onSpinWait();
+			} else
+			{
+				long now = System.nanoTime();
+				if (polls++ == FULL_SPINS)
+				{
+					deadline = now + FULL_WAIT;
+				} else if (now - deadline > 0)
+				{
+					if (metrics != null)
+					{
+						metrics.replyDropped();
+					}
+					return false;
+				}
+				LockSupport.parkNanos(this, FULL_NAP);
+			}
+		}
+		
+		int slot = (int) sequence & mask;
+		System.arraycopy(payload, offset, data[slot], 0, length);
+		lengths[slot] = length;
+		targets[slot] = target;
+		if (governor != null)
+		{
+			times[slot] = System.nanoTime();
+		}
+		published.set(slot, sequence);
+		
+		if (parked)
+		{
+			LockSupport.unpark(writer);
+		}
+		return true;
+	}
+	
+	/**
+	 * Sends published datagrams in order until the program ends.
+	 */
+	public void run()
+	{
+		long next = 0;
+		int idle = 0;
+		for (;;)
+		{
+			int slot = (int) next & mask;
+			if (published.get(slot) == next)
+			{
+				send(slot);
+				sent = next++;
+				idle = 0;
+			} else if (idle < SPINS)
+			{
+				idle++;
+				Thread.onSpinWait();
+			} else
+			{
+				parked = true;
+				if (published.get(slot) != next)
+				{
+					LockSupport.park(this);
+				}
+				parked = false;
+				idle = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Sends the datagram in a slot. A failed send loses only that datagram.
+	 */
+	private void send(int slot)
+	{
+		try
+		{
+			transport.send(data[slot], 0, lengths[slot], targets[slot]);
+		} catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		if (governor != null)
+		{
+			long done = System.nanoTime();
+			governor.record(done - times[slot], done);
+		}
+	}
+}
@@ -0,0 +1,28 @@
+/**
+ * Specifies the interface for the rules of a MouseCatElephant game: how many
+ * animals there are and which animals defeat which. An OutcomeTable compiles
+ * the rules into a lookup table, so the rules themselves are never consulted
+ * during a game.
+ * 
+ * @author	Adam Warner
+ * @version 10/18/2026
+ */
+public interface OutcomeRules 
+{
+	/**
+	 * Gets the number of animals. Animals are numbered from zero.
+	 * 
+	 * @return count			The number of animals
+	 */
+	public int getAnimalCount();
+	
+	/**
+	 * Tests whether one animal defeats another.
+	 * 
+	 * @param  animal			The animal that may win
+	 * @param  other			The animal that may lose
+	 * @return vs				The interaction by which the animal defeats the
+	 *							other (greater than zero), or 0 if it does not
+	 */
+	public int defeats(int animal, int other);
+}
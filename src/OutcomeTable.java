@@ -0,0 +1,135 @@
+/**
+ * Class OutcomeTable resolves rounds of a MouseCatElephant game. The rules
+ * are compiled once into a table with one packed int for every pair of
+ * choices, indexed by p1Choice * animals + p2Choice. A single table load
+ * gives the outcome to report and which player scores, so resolving a round
+ * does not branch on the choices.
+ * 
+ * An outcome packs the first animal in bits 0-7, the interaction in bits
+ * 8-15, the second animal in bits 16-23 and the scoring player in bits
+ * 24-31.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+public class OutcomeTable
+{
+	/** The table for the standard rules. */
+	public static final OutcomeTable STANDARD =
+		new OutcomeTable(new MouseCatElephantRules());
+	
+	/** Scoring codes. */
+	public static final int NO_SCORE = 0, P1_SCORES = 1, P2_SCORES = 2;
+	
+	private int animals;
+	private int[] outcomes;
+	
+	/**
+	 * Constructor for the OutcomeTable object. Compiles a set of rules.
+	 * 
+	 * @param  rules			The rules
+	 * 
+	 * @throws IllegalArgumentException		Thrown if two animals defeat each other
+	 */
+	public OutcomeTable(OutcomeRules rules)
+	{
+		animals = rules.getAnimalCount();
+		outcomes = new int[animals * animals];
+		for (int p1 = 0; p1 < animals; p1++)
+		{
+			for (int p2 = 0; p2 < animals; p2++)
+			{
+				int vs1 = p1 == p2 ? 0 : rules.defeats(p1, p2);
+				int vs2 = p1 == p2 ? 0 : rules.defeats(p2, p1);
+				int outcome;
+				if (vs1 > 0 && vs2 > 0)
+				{
+					throw new IllegalArgumentException("Animals " + p1 + " and "
+						+ p2 + " defeat each other");
+				} else if (vs1 > 0)
+				{
+					outcome = encode(p1, vs1, p2, P1_SCORES);
+				} else if (vs2 > 0)
+				{
+					outcome = encode(p2, vs2, p1, P2_SCORES);
+				} else
+					outcome = encode(p1, 0, p2, NO_SCORE);
+				outcomes[p1 * animals + p2] = outcome;
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of animals.
+	 * 
+	 * @return count			The number of animals
+	 */
+	public int getAnimalCount()
+	{
+		return animals;
+	}
+	
+	/**
+	 * Gets the outcome of a round.
+	 * 
+	 * @param  p1Choice			The animal chosen by player 1
+	 * @param  p2Choice			The animal chosen by player 2
+	 * @return outcome			The packed outcome
+	 */
+	public int lookup(int p1Choice, int p2Choice)
+	{
+		return outcomes[p1Choice * animals + p2Choice];
+	}
+	
+	/**
+	 * Gets the first animal in an outcome; the winner unless it is a tie.
+	 * 
+	 * @param  outcome			The packed outcome
+	 * @return animal			The first animal
+	 */
+	public static int getAnimal1(int outcome)
+	{
+		return outcome & 0xFF;
+	}
+	
+	/**
+	 * Gets the interaction in an outcome.
+	 * 
+	 * @param  outcome			The packed outcome
+	 * @return vs				The interaction (0 for a tie)
+	 */
+	public static int getVs(int outcome)
+	{
+		return (outcome >>> 8) & 0xFF;
+	}
+	
+	/**
+	 * Gets the second animal in an outcome.
+	 * 
+	 * @param  outcome			The packed outcome
+	 * @return animal			The second animal
+	 */
+	public static int getAnimal2(int outcome)
+	{
+		return (outcome >>> 16) & 0xFF;
+	}
+	
+	/**
+	 * Gets the player who scores in an outcome.
+	 * 
+	 * @param  outcome			The packed outcome
+	 * @return scorer			NO_SCORE, P1_SCORES or P2_SCORES
+	 */
+	public static int getScorer(int outcome)
+	{
+		return outcome >>> 24;
+	}
+	
+	/**
+	 * Packs an outcome.
+	 */
+	private static int encode(int animal1, int vs, int animal2, int scorer)
+	{
+		return animal1 | vs << 8 | animal2 << 16 | scorer << 24;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Class OverloadGovernor decides when the MouseCatElephant server is too
+ * busy to take new players. Each piece of work reports how long it took from
+ * being queued to being done, and the governor keeps a moving average. While
+ * the average is above the threshold, new joins are turned away so that
+ * games already running keep their latency.
+ * 
+ * A receive thread reports the datagrams it handles itself. A message handed
+ * to a session actor is reported by the actor once it has been handled, so
+ * the time it sat in the actor's queue counts; a reply queued on an outbound
+ * ring is reported by the ring's writer once it has been sent. A backlog at
+ * any stage therefore raises the average.
+ * 
+ * One governor is shared by all these threads. Updates are unsynchronized
+ * read-modify-writes of a volatile field: a lost update only drops one sample
+ * from a smoothed average, and no thread ever waits on another.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+public class OverloadGovernor
+{
+	private static final int SHIFT = 4;				// average weight 1/16
+	private static final long STALE = 1000000000L;	// samples older than 1 s are ignored
+	
+	private long threshold;
+	private volatile long average = 0;
+	private volatile long lastSample = System.nanoTime();
+	
+	/**
+	 * Constructor for the OverloadGovernor object.
+	 * 
+	 * @param threshold		The average processing time in nanoseconds above
+	 *						which new joins are refused
+	 */
+	public OverloadGovernor(long threshold)
+	{
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Records the time taken by one piece of work.
+	 * 
+	 * @param elapsed		The time from being queued to being done, in
+	 *						nanoseconds
+	 * @param now			The current time in nanoseconds
+	 */
+	public void record(long elapsed, long now)
+	{
+		long avg = average;
+		average = avg + ((elapsed - avg) >> SHIFT);
+		lastSample = now;
+	}
+	
+	/**
+	 * Tests whether new joins should be refused. Once traffic stops there are
+	 * no new samples, so an old average does not keep the server closed.
+	 * 
+	 * @param  now			The current time in nanoseconds
+	 * @return overloaded	True if the server is overloaded
+	 */
+	public boolean isOverloaded(long now)
+	{
+		return average > threshold && now - lastSample < STALE;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * Class RateLimiter limits how fast each client of the MouseCatElephant
+ * server may send. It is a token bucket kept in its virtual scheduling form
+ * (GCRA): each proxy stores only the time at which its bucket would be full
+ * again, so checking and updating a client is one read and one write of a
+ * field that only its receive thread ever touches.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+public class RateLimiter
+{
+	private long interval;		// nanoseconds per token
+	private long tolerance;		// how far ahead of the rate a burst may run
+	
+	/**
+	 * Constructor for the RateLimiter object.
+	 * 
+	 * @param rate			The sustained rate in messages per second
+	 * @param burst			The number of messages that may arrive at once
+	 */
+	public RateLimiter(int rate, int burst)
+	{
+		interval = 1000000000L / rate;
+		tolerance = interval * (burst - 1);
+	}
+	
+	/**
+	 * Takes a token from a client's bucket if one is available.
+	 * 
+	 * @param  proxy		The client's proxy
+	 * @param  now			The current time in nanoseconds
+	 * @return allowed		True if the message may be processed
+	 */
+	public boolean tryAcquire(ViewProxy proxy, long now)
+	{
+		long full = proxy.getBucketFull();
+		if (full - now < 0)
+		{
+			full = now;
+		}
+		if (full - now > tolerance)
+			return false;
+		
+		proxy.setBucketFull(full + interval);
+		return true;
+	}
+}
@@ -0,0 +1,582 @@
+/**
+ * Class ReliableChannel adds reliable, in-order delivery to the messages
+ * between a MouseCatElephant client and server. The same class is used at
+ * both ends, by ViewProxy and by ModelProxy.
+ * 
+ * Each message travels in an envelope:
+ * <UL>
+ * <LI><TT>'@' seq ack sack message</TT> carries a message with its 16-bit
+ * sequence number
+ * <LI><TT>'A' ack sack</TT> carries only an acknowledgement
+ * </UL>
+ * ack is the sequence number of the last message received in order, and
+ * sack is a bitmap of the messages after the next one, bit i set if
+ * message ack + 2 + i has arrived out of order. Every envelope carries the
+ * latest ack, so when traffic flows both ways acknowledgements ride along
+ * with messages; otherwise a bare acknowledgement is sent after a short
+ * delay.
+ * 
+ * The sender keeps up to WINDOW messages in flight and queues the rest. A
+ * message is sent again when it has gone unacknowledged for the
+ * retransmission timeout, which follows the measured round trip time as in
+ * RFC 6298, or sooner when the sack shows that a later message got through.
+ * The timeout doubles while resends go unanswered, and drops back as soon
+ * as anything new is acknowledged.
+ * The receiver drops duplicates and holds messages that arrive early until
+ * the gap before them is filled.
+ * 
+ * Messages are sent on the caller's thread, and retransmissions and bare
+ * acknowledgements on one timer thread shared by all channels. Envelopes
+ * must be received on a single thread.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class ReliableChannel
+{
+	/** The length of the envelope around a message. */
+	public static final int HEADER = 9;
+	
+	private static final int ACK_LENGTH = 7;
+	private static final int WINDOW = 32;
+	
+	// Retransmission timeout bounds, in nanoseconds. RFC 6298 asks for a
+	// one second floor; a game wants recovery in a few round trips instead.
+	// Backing off past a couple of seconds only delays recovery, since the
+	// server's idle timeout ends sessions whose player has gone.
+	private static final long INITIAL_RTO = 1000000000L;
+	private static final long MIN_RTO = 50000000L;
+	private static final long MAX_RTO = 2000000000L;
+	private static final long ACK_DELAY = 10000000L;
+	
+	private static final ScheduledThreadPoolExecutor TIMER =
+		new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+		{
+			public Thread newThread(Runnable task)
+			{
+				Thread thread = new Thread(task, "ReliableChannel timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	
+	static
+	{
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+	
+	/**
+	 * Interface Link connects a reliable channel to the network and to the
+	 * code that handles its messages.
+	 */
+	public interface Link
+	{
+		/**
+		 * Sends a datagram to the other end.
+		 * 
+		 * @param  data			The buffer holding the datagram
+		 * @param  offset		The offset of the datagram in the buffer
+		 * @param  length		The length of the datagram
+		 * 
+		 * @throws IOException	Thrown if an I/O error occurred
+		 */
+		public void transmit(byte[] data, int offset, int length)
+			throws IOException;
+		
+		/**
+		 * Handles a message, in the order it was sent.
+		 * 
+		 * @param  data			The buffer holding the message
+		 * @param  offset		The offset of the message in the buffer
+		 * @param  length		The length of the message
+		 * @return stop			Non-zero to deliver nothing more
+		 * 
+		 * @throws IOException	Thrown if an I/O error occurred
+		 */
+		public int deliver(byte[] data, int offset, int length)
+			throws IOException;
+	}
+	
+	private Link link;
+	private boolean closed = false;
+	
+	// Sending, guarded by this channel's monitor
+	private byte[][] window = new byte[WINDOW][];
+	private int[] lengths = new int[WINDOW];
+	private long[] sentAt = new long[WINDOW];
+	private boolean[] resent = new boolean[WINDOW];
+	private boolean[] sacked = new boolean[WINDOW];
+	private int sendBase = 1, nextSeq = 1;		// oldest unacknowledged, next to send
+	private ArrayDeque<byte[]> backlog = new ArrayDeque<byte[]>();
+	private long srtt = -1, rttvar, rto = INITIAL_RTO;
+	private int backoff = 0;		// timeouts since anything new was acknowledged
+	private boolean hole = false;		// a sack showed a message went missing
+	private ScheduledFuture<?> timer;
+	private byte[] out = new byte[OutboundRing.SLOT_SIZE];
+	
+	// Acknowledgement state, guarded by this channel's monitor
+	private int expected = 1;		// next sequence number to deliver
+	private int received;			// bit i: message expected + i is held
+	private boolean ackPending = false;
+	private ScheduledFuture<?> ackTimer;
+	
+	// Messages that arrived early, owned by the receiving thread
+	private byte[][] early = new byte[WINDOW][];
+	private int[] earlyLengths = new int[WINDOW];
+	
+	// Envelopes built on the timer thread
+	private byte[] scratch = new byte[OutboundRing.SLOT_SIZE];
+	
+	private final Runnable onTimeout = new Runnable()
+	{
+		public void run()
+		{
+			try
+			{
+				retransmit();
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	};
+	
+	private final Runnable onAckDelay = new Runnable()
+	{
+		public void run()
+		{
+			try
+			{
+				sendAck();
+			} catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	};
+	
+	/**
+	 * Constructor for the ReliableChannel object.
+	 * 
+	 * @param  link				The link the channel sends and delivers through
+	 */
+	public ReliableChannel(Link link)
+	{
+		this.link = link;
+	}
+	
+	/**
+	 * Sends a message reliably. The message is copied, so the caller may
+	 * reuse its buffer as soon as this returns.
+	 * 
+	 * @param  payload			The buffer holding the message
+	 * @param  offset			The offset of the message in the buffer
+	 * @param  length			The length of the message
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 * @throws IllegalArgumentException		Thrown if the message does not
+	 *										fit in an envelope
+	 */
+	public synchronized void send(byte[] payload, int offset, int length)
+		throws IOException
+	{
+		if (length > out.length - HEADER)
+			throw new IllegalArgumentException("Message too long: " + length);
+		if (closed)
+			return;
+		
+		if (inFlight() == WINDOW || !backlog.isEmpty())
+		{
+			backlog.add(Arrays.copyOfRange(payload, offset, offset + length));
+			return;
+		}
+		
+		int seq = nextSeq;
+		nextSeq = (nextSeq + 1) & 0xFFFF;
+		int slot = seq & (WINDOW - 1);
+		if (window[slot] == null || window[slot].length < length)
+		{
+			window[slot] = new byte[Math.max(length, 32)];
+		}
+		System.arraycopy(payload, offset, window[slot], 0, length);
+		lengths[slot] = length;
+		sentAt[slot] = System.nanoTime();
+		resent[slot] = false;
+		sacked[slot] = false;
+		
+		link.transmit(out, 0, wrap(seq, out));
+		if (timer == null)
+		{
+			timer = TIMER.schedule(onTimeout, timeout(), TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Finds a message inside its envelope, if it has one.
+	 * 
+	 * @param  data				The buffer holding the message or envelope
+	 * @param  offset			The offset of the message or envelope
+	 * @param  length			The length of the message or envelope
+	 * @return offset			The offset of the message
+	 */
+	public static int unwrap(byte[] data, int offset, int length)
+	{
+		if (length > HEADER && data[offset] == '@')
+			return offset + HEADER;
+		return offset;
+	}
+	
+	/**
+	 * Receives an envelope. Acknowledgements are applied, and messages are
+	 * passed to the link in order, each exactly once.
+	 * 
+	 * @param  data				The buffer holding the envelope
+	 * @param  offset			The offset of the envelope in the buffer
+	 * @param  length			The length of the envelope
+	 * @return stop				The non-zero result of the last delivery, or 0
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public int receive(byte[] data, int offset, int length) throws IOException
+	{
+		if (length >= ACK_LENGTH && data[offset] == 'A')
+		{
+			acknowledge(readShort(data, offset + 1), readInt(data, offset + 3));
+			return 0;
+		}
+		if (length <= HEADER || data[offset] != '@')
+			return 0;
+		
+		int seq = readShort(data, offset + 1);
+		acknowledge(readShort(data, offset + 3), readInt(data, offset + 5));
+		
+		int ahead;
+		synchronized (this)
+		{
+			ahead = (short) (seq - expected);
+			if (ahead == 0)
+			{
+				expected = (expected + 1) & 0xFFFF;
+				received >>>= 1;
+			} else if (ahead > 0 && ahead < WINDOW && (received & 1 << ahead) == 0)
+			{
+				received |= 1 << ahead;
+			} else
+				ahead = -1;		// a duplicate, or too far ahead to hold
+			scheduleAck();
+		}
+		
+		if (ahead < 0)
+			return 0;
+		if (ahead > 0)
+		{
+			int slot = seq & (WINDOW - 1);
+			int size = length - HEADER;
+			if (early[slot] == null || early[slot].length < size)
+			{
+				early[slot] = new byte[Math.max(size, 32)];
+			}
+			System.arraycopy(data, offset + HEADER, early[slot], 0, size);
+			earlyLengths[slot] = size;
+			return 0;
+		}
+		
+		int stop = link.deliver(data, offset + HEADER, length - HEADER);
+		while (stop == 0)
+		{
+			int slot;
+			synchronized (this)
+			{
+				if ((received & 1) == 0)
+					break;
+				slot = expected & (WINDOW - 1);
+				expected = (expected + 1) & 0xFFFF;
+				received >>>= 1;
+			}
+			stop = link.deliver(early[slot], 0, earlyLengths[slot]);
+		}
+		return stop;
+	}
+	
+	/**
+	 * Stops sending. Messages still in flight are abandoned.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		backlog.clear();
+		if (timer != null)
+		{
+			timer.cancel(false);
+			timer = null;
+		}
+		if (ackTimer != null)
+		{
+			ackTimer.cancel(false);
+			ackTimer = null;
+		}
+	}
+	
+	/**
+	 * Gets the current retransmission timeout.
+	 * 
+	 * @return rto				The timeout in nanoseconds
+	 */
+	public synchronized long getRetransmitTimeout()
+	{
+		return timeout();
+	}
+	
+	/**
+	 * Applies an acknowledgement from the other end.
+	 * 
+	 * @param  ack				The last sequence number received in order
+	 * @param  sack				The bitmap of messages received after it
+	 */
+	private synchronized void acknowledge(int ack, int sack)
+	{
+		int count = (short) (ack - sendBase) + 1;
+		if (count < 0 || count > inFlight())
+			return;		// out of date, or acknowledges something never sent
+		
+		long now = System.nanoTime();
+		if (count > 0)
+		{
+			// Karn: time only first transmissions, and only when nothing
+			// acknowledged with them was held up waiting for a resend
+			boolean clean = true;
+			for (int i = 0; i < count; i++)
+			{
+				clean &= !resent[(sendBase + i) & (WINDOW - 1)];
+			}
+			if (clean)
+			{
+				sample(now - sentAt[ack & (WINDOW - 1)]);
+			}
+			sendBase = (ack + 1) & 0xFFFF;
+			backoff = 0;
+		}
+		
+		int flight = inFlight();
+		for (int i = 0; i + 1 < flight; i++)
+		{
+			if ((sack & 1 << i) != 0)
+			{
+				sacked[(sendBase + 1 + i) & (WINDOW - 1)] = true;
+			}
+		}
+		if (flight > 0 && !sacked[sendBase & (WINDOW - 1)] && sack != 0
+			&& now - sentAt[sendBase & (WINDOW - 1)] > Math.max(srtt, 0))
+		{
+			hole = true;		// a later message overtook it
+		}
+		
+		if (count > 0 || hole)
+		{
+			if (timer != null)
+			{
+				timer.cancel(false);
+				timer = null;
+			}
+			if (flight > 0 || !backlog.isEmpty())
+			{
+				long delay = (hole || !backlog.isEmpty()) ? 0 : timeout();
+				timer = TIMER.schedule(onTimeout, delay, TimeUnit.NANOSECONDS);
+			}
+		}
+	}
+	
+	/**
+	 * Sends again the messages whose timeout has passed, fills the window
+	 * from the backlog, and restarts the timer. Runs on the timer thread.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void retransmit() throws IOException
+	{
+		int seq = -1;
+		boolean expired = false;
+		for (;;)
+		{
+			int length;
+			synchronized (this)
+			{
+				if (closed)
+					return;
+				
+				long now = System.nanoTime();
+				if (seq < 0)
+				{
+					seq = sendBase;
+					int base = seq & (WINDOW - 1);
+					expired = inFlight() > 0 && !hole && now - sentAt[base] >= timeout();
+				} else if ((short) (seq - sendBase) < 0)
+				{
+					seq = sendBase;		// acknowledged while we were sending
+				} else
+					seq = (seq + 1) & 0xFFFF;
+				
+				// Skip what has been received or is not yet due
+				while (seq != nextSeq)
+				{
+					int slot = seq & (WINDOW - 1);
+					if (!sacked[slot] && (now - sentAt[slot] >= timeout()
+						|| (hole && seq == sendBase)))
+						break;
+					seq = (seq + 1) & 0xFFFF;
+				}
+				
+				if (seq == nextSeq)
+				{
+					if (backlog.isEmpty() || inFlight() == WINDOW)
+					{
+						hole = false;
+						if (expired && timeout() < MAX_RTO)
+						{
+							backoff++;
+						}
+						if (timer != null)
+						{
+							timer.cancel(false);
+						}
+						timer = inFlight() > 0 ? TIMER.schedule(onTimeout,
+							timeout(), TimeUnit.NANOSECONDS) : null;
+						return;
+					}
+					
+					byte[] message = backlog.poll();	// first transmission
+					int slot = seq & (WINDOW - 1);
+					nextSeq = (nextSeq + 1) & 0xFFFF;
+					window[slot] = message;
+					lengths[slot] = message.length;
+					resent[slot] = false;
+					sacked[slot] = false;
+				} else
+					resent[seq & (WINDOW - 1)] = true;
+				
+				sentAt[seq & (WINDOW - 1)] = now;
+				length = wrap(seq, scratch);
+			}
+			link.transmit(scratch, 0, length);
+		}
+	}
+	
+	/**
+	 * Sends a bare acknowledgement if no message has carried one since the
+	 * last arrival. Runs on the timer thread.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void sendAck() throws IOException
+	{
+		synchronized (this)
+		{
+			ackTimer = null;
+			if (!ackPending || closed)
+				return;
+			
+			ackPending = false;
+			scratch[0] = 'A';
+			writeShort(scratch, 1, (expected - 1) & 0xFFFF);
+			writeInt(scratch, 3, received >>> 1);
+		}
+		link.transmit(scratch, 0, ACK_LENGTH);
+	}
+	
+	/**
+	 * Arranges for a bare acknowledgement unless a message carries one first.
+	 * Callers hold this channel's monitor.
+	 */
+	private void scheduleAck()
+	{
+		ackPending = true;
+		if (ackTimer == null && !closed)
+		{
+			ackTimer = TIMER.schedule(onAckDelay, ACK_DELAY, TimeUnit.NANOSECONDS);
+		}
+	}
+	
+	/**
+	 * Builds the envelope for a message in the window, carrying the latest
+	 * acknowledgement. Callers hold this channel's monitor.
+	 * 
+	 * @return length			The length of the envelope
+	 */
+	private int wrap(int seq, byte[] buffer)
+	{
+		int slot = seq & (WINDOW - 1);
+		buffer[0] = '@';
+		writeShort(buffer, 1, seq);
+		writeShort(buffer, 3, (expected - 1) & 0xFFFF);
+		writeInt(buffer, 5, received >>> 1);
+		System.arraycopy(window[slot], 0, buffer, HEADER, lengths[slot]);
+		ackPending = false;
+		return HEADER + lengths[slot];
+	}
+	
+	/**
+	 * Folds a round trip time into the smoothed estimates and recomputes the
+	 * retransmission timeout, as in RFC 6298.
+	 */
+	private void sample(long rtt)
+	{
+		if (srtt < 0)
+		{
+			srtt = rtt;
+			rttvar = rtt / 2;
+		} else
+		{
+			rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+			srtt = (7 * srtt + rtt) / 8;
+		}
+		rto = Math.min(Math.max(srtt + 4 * rttvar, MIN_RTO), MAX_RTO);
+	}
+	
+	/**
+	 * Gets the retransmission timeout, doubled for each timeout since
+	 * anything new was acknowledged.
+	 */
+	private long timeout()
+	{
+		return Math.min(rto << backoff, MAX_RTO);
+	}
+	
+	/**
+	 * Gets the number of messages sent and not yet acknowledged.
+	 */
+	private int inFlight()
+	{
+		return (nextSeq - sendBase) & 0xFFFF;
+	}
+	
+	private static int readShort(byte[] data, int offset)
+	{
+		return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+	}
+	
+	private static int readInt(byte[] data, int offset)
+	{
+		return readShort(data, offset) << 16 | readShort(data, offset + 2);
+	}
+	
+	private static void writeShort(byte[] data, int offset, int value)
+	{
+		data[offset] = (byte) (value >> 8);
+		data[offset + 1] = (byte) value;
+	}
+	
+	private static void writeInt(byte[] data, int offset, int value)
+	{
+		writeShort(data, offset, value >>> 16);
+		writeShort(data, offset + 2, value);
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * Class ServerEvents holds the Java Flight Recorder events of the
+ * MouseCatElephant server. Each one times a step that can stall a player:
+ * waiting on the transport for a datagram, processing it in a proxy,
+ * sending to a client and resolving a round. Each carries the session id
+ * and the message type, so a slow step can be lined up with the GC, lock
+ * and socket events of the same thread in one recording.
+ * 
+ * The events are disabled by default. Each event class has enabled(), and
+ * callers make an event only when it returns true, so a disabled event
+ * costs a check of one flag and no object, whatever escape analysis does.
+ * The events can stay compiled in. To record them, copy the JDK's
+ * default.jfc, add an entry
+ * for each event wanted, such as
+ * 
+ * <PRE>
+ * &lt;event name="mce.Process"&gt;
+ *   &lt;setting name="enabled"&gt;true&lt;/setting&gt;
+ *   &lt;setting name="threshold"&gt;1 ms&lt;/setting&gt;
+ * &lt;/event&gt;
+ * </PRE>
+ * 
+ * and start the server with -XX:StartFlightRecording:settings=&lt;file&gt;,
+ * or start a recording later with jcmd &lt;pid&gt; JFR.start settings=&lt;file&gt;.
+ * A threshold keeps only the slow ones.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public class ServerEvents
+{
+	/**
+	 * ServerEvents only holds the event classes.
+	 */
+	private ServerEvents()
+	{
+	}
+	
+	/**
+	 * Class Receive times a mailbox handling a datagram once it has arrived:
+	 * reaping idle clients, finding the sender's proxy and processing the
+	 * message. Time spent waiting for the datagram is not counted.
+	 */
+	@Name("mce.Receive")
+	@Label("Receive")
+	@Category("MouseCatElephant")
+	@Description("A mailbox handling a datagram it has received")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class Receive extends Event
+	{
+		private static final Receive PROBE = new Receive();
+		
+		/**
+		 * Tells whether this event is being recorded, without making one.
+		 * 
+		 * @return enabled		True if a recording has the event enabled
+		 */
+		public static boolean enabled()
+		{
+			return PROBE.isEnabled();
+		}
+		
+		@Label("Length")
+		public int length;
+		
+		@Label("Message Type")
+		public char opcode;
+	}
+	
+	/**
+	 * Class Process times a proxy decoding a message and handing it to its
+	 * session, or to the session's actor.
+	 */
+	@Name("mce.Process")
+	@Label("Process")
+	@Category("MouseCatElephant")
+	@Description("A proxy decoding a message and handing it on")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class Process extends Event
+	{
+		private static final Process PROBE = new Process();
+		
+		/**
+		 * Tells whether this event is being recorded, without making one.
+		 * 
+		 * @return enabled		True if a recording has the event enabled
+		 */
+		public static boolean enabled()
+		{
+			return PROBE.isEnabled();
+		}
+		
+		@Label("Session")
+		public int session;
+		
+		@Label("Message Type")
+		public char opcode;
+	}
+	
+	/**
+	 * Class Send times a proxy sending a datagram to its client, or copying
+	 * it onto an outbound ring.
+	 */
+	@Name("mce.Send")
+	@Label("Send")
+	@Category("MouseCatElephant")
+	@Description("A proxy sending a datagram to its client")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class Send extends Event
+	{
+		private static final Send PROBE = new Send();
+		
+		/**
+		 * Tells whether this event is being recorded, without making one.
+		 * 
+		 * @return enabled		True if a recording has the event enabled
+		 */
+		public static boolean enabled()
+		{
+			return PROBE.isEnabled();
+		}
+		
+		@Label("Session")
+		public int session;
+		
+		@Label("Message Type")
+		public char opcode;
+		
+		@Label("Length")
+		public int length;
+	}
+	
+	/**
+	 * Class Round times a session resolving a round, or a batch of rounds,
+	 * and reporting the results to both players.
+	 */
+	@Name("mce.Round")
+	@Label("Round")
+	@Category("MouseCatElephant")
+	@Description("A session resolving rounds and reporting them")
+	@Enabled(false)
+	@StackTrace(false)
+	public static class Round extends Event
+	{
+		private static final Round PROBE = new Round();
+		
+		/**
+		 * Tells whether this event is being recorded, without making one.
+		 * 
+		 * @return enabled		True if a recording has the event enabled
+		 */
+		public static boolean enabled()
+		{
+			return PROBE.isEnabled();
+		}
+		
+		@Label("Session")
+		public int session;
+		
+		@Label("Message Type")
+		public char opcode;
+		
+		@Label("Rounds")
+		public int rounds;
+	}
+}
@@ -0,0 +1,260 @@
+/**
+ * Class ServerSnapshot is an immutable picture of a MouseCatElephant server:
+ * its sessions, the players in them, the players waiting for an opponent
+ * and the client addresses connected. AdminServer takes one periodically
+ * and answers every query from the latest, so that operators asking about
+ * the server never make a receive thread or a session wait.
+ * 
+ * A snapshot is taken without any lock. Each shard's table of sessions is
+ * copied while players join and quit, and each session's fields are read as
+ * they stand, so a session that opened during the copy may be missing and
+ * one caught mid-round may show the score from before it. The snapshot
+ * says when it was taken.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ServerSnapshot
+{
+	private long time;
+	private Map<Integer, Session> sessions;
+	private int waiting;
+	private int connections;
+	private boolean draining;
+	
+	/**
+	 * Constructor for the ServerSnapshot object.
+	 * 
+	 * @param time				The time it was taken in milliseconds
+	 * @param sessions			The sessions by id
+	 * @param connections		The number of client addresses connected
+	 * @param draining			True if new players are being turned away
+	 */
+	private ServerSnapshot(long time, Map<Integer, Session> sessions,
+		int connections, boolean draining)
+	{
+		this.time = time;
+		this.sessions = Collections.unmodifiableMap(sessions);
+		this.connections = connections;
+		this.draining = draining;
+		for (Session session : sessions.values())
+		{
+			if (session.isWaiting())
+			{
+				waiting++;
+			}
+		}
+	}
+	
+	/**
+	 * Takes a snapshot of a server.
+	 * 
+	 * @param  shards			The session managers of all shards
+	 * @param  managers			The mailbox managers of all shards
+	 * @return snapshot			The snapshot
+	 */
+	public static ServerSnapshot take(SessionManager[] shards,
+		MailboxManager[] managers)
+	{
+		Map<Integer, Session> sessions = new LinkedHashMap<Integer, Session>();
+		for (SessionManager shard : shards)
+		{
+			for (MouseCatElephantServerState model : shard.getSessions())
+			{
+				if (model != null)
+				{
+					Session session = model.describe();
+					if (!session.isEnded())
+					{
+						sessions.put(session.getId(), session);
+					}
+				}
+			}
+		}
+		
+		int connections = 0;
+		boolean draining = false;
+		for (MailboxManager manager : managers)
+		{
+			connections += manager.getConnections();
+			draining |= manager.isDraining();
+		}
+		return new ServerSnapshot(System.currentTimeMillis(), sessions,
+			connections, draining);
+	}
+	
+	/**
+	 * Gets the time the snapshot was taken.
+	 * 
+	 * @return time				The time in milliseconds since the epoch
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+	
+	/**
+	 * Gets the open sessions.
+	 * 
+	 * @return sessions			The sessions, in shard and slot order
+	 */
+	public List<Session> getSessions()
+	{
+		return new ArrayList<Session>(sessions.values());
+	}
+	
+	/**
+	 * Gets one session.
+	 * 
+	 * @param  id				The session id
+	 * @return session			The session, or null if it is not open
+	 */
+	public Session getSession(int id)
+	{
+		return sessions.get(id);
+	}
+	
+	/**
+	 * Gets the number of open sessions.
+	 * 
+	 * @return count			The count
+	 */
+	public int getSessionCount()
+	{
+		return sessions.size();
+	}
+	
+	/**
+	 * Gets the number of players waiting for an opponent.
+	 * 
+	 * @return count			The count
+	 */
+	public int getWaiting()
+	{
+		return waiting;
+	}
+	
+	/**
+	 * Gets the number of client addresses connected.
+	 * 
+	 * @return count			The count
+	 */
+	public int getConnections()
+	{
+		return connections;
+	}
+	
+	/**
+	 * Tells whether new players were being turned away.
+	 * 
+	 * @return draining			True if the server was draining
+	 */
+	public boolean isDraining()
+	{
+		return draining;
+	}
+	
+	/**
+	 * Class Session is an immutable picture of one session.
+	 */
+	public static class Session
+	{
+		private int id;
+		private int players;
+		private String p1Name, p2Name;
+		private int p1Score, p2Score;
+		private boolean ended;
+		
+		/**
+		 * Constructor for the Session object.
+		 * 
+		 * @param id			The session id
+		 * @param players		The number of players who have joined
+		 * @param p1Name		The name of the first player, or null
+		 * @param p1Score		The score of the first player
+		 * @param p2Name		The name of the second player, or null
+		 * @param p2Score		The score of the second player
+		 * @param ended			True if a player has quit
+		 */
+		public Session(int id, int players, String p1Name, int p1Score,
+			String p2Name, int p2Score, boolean ended)
+		{
+			this.id = id;
+			this.players = players;
+			this.p1Name = p1Name;
+			this.p1Score = p1Score;
+			this.p2Name = p2Name;
+			this.p2Score = p2Score;
+			this.ended = ended;
+		}
+		
+		/**
+		 * Gets the session id.
+		 * 
+		 * @return id			The session id
+		 */
+		public int getId()
+		{
+			return id;
+		}
+		
+		/**
+		 * Gets the number of players who have joined.
+		 * 
+		 * @return players		0, 1 or 2
+		 */
+		public int getPlayers()
+		{
+			return players;
+		}
+		
+		/**
+		 * Gets a player name.
+		 * 
+		 * @param  id			The player id
+		 * @return name			The name, or null if it is not known yet
+		 */
+		public String getPlayerName(int id)
+		{
+			return id == 0 ? p1Name : p2Name;
+		}
+		
+		/**
+		 * Gets a player score.
+		 * 
+		 * @param  id			The player id
+		 * @return score		The score
+		 */
+		public int getPlayerScore(int id)
+		{
+			return id == 0 ? p1Score : p2Score;
+		}
+		
+		/**
+		 * Tells whether a player has quit.
+		 * 
+		 * @return ended		True if the session has ended
+		 */
+		public boolean isEnded()
+		{
+			return ended;
+		}
+		
+		/**
+		 * Tells whether the first player is still waiting for an opponent.
+		 * 
+		 * @return waiting		True if only one player has joined
+		 */
+		public boolean isWaiting()
+		{
+			return players == 1 && !ended;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Class SessionActor runs the work for one session in the order it was
+ * submitted. Tasks are queued on the actor and drained by a shared thread
+ * pool, so different sessions run in parallel while the messages of any one
+ * session are still handled one at a time and in order.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SessionActor implements Executor, Runnable
+{
+	private static final int BATCH = 64;	// tasks run before yielding the thread
+	
+	private ConcurrentLinkedQueue<Runnable> mailbox =
+		new ConcurrentLinkedQueue<Runnable>();
+	private AtomicBoolean scheduled = new AtomicBoolean(false);
+	private Executor pool;
+	
+	/**
+	 * Constructor for the SessionActor object.
+	 * 
+	 * @param pool			The thread pool that drains the actor
+	 */
+	public SessionActor(Executor pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * Queues a task for this session and schedules the actor if it is idle.
+	 * 
+	 * @param task			The task
+	 */
+	public void execute(Runnable task)
+	{
+		mailbox.offer(task);
+		if (scheduled.compareAndSet(false, true))
+		{
+			pool.execute(this);
+		}
+	}
+	
+	/**
+	 * Runs queued tasks. After a batch the actor gives up its thread so that
+	 * one busy session cannot starve the others.
+	 */
+	public void run()
+	{
+		Runnable task;
+		for (int i = 0; i < BATCH && (task = mailbox.poll()) != null; i++)
+		{
+			try
+			{
+				task.run();
+			} catch (RuntimeException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		
+		scheduled.set(false);
+		if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true))
+		{
+			pool.execute(this);
+		}
+	}
+}
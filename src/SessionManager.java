@@ -7,92 +7,300 @@
  */
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.Executor;
 
 public class SessionManager implements ViewListener 
 {
-	private HashMap<Integer, MouseCatElephantServerState> sessions = 
-		new HashMap<Integer, MouseCatElephantServerState>();
-	private int key = 1;
+	private SessionTable sessions;
+	private Matchmaker matchmaker;
+	private Executor pool;
+	private SessionManager[] shards;
+	private int shard;
+	private Metrics metrics;
 	
 	/**
 	 * Constructor for the SessionManager object.
 	 */
-	public SessionManager(){}
+	public SessionManager()
+	{
+		this(new Matchmaker());
+	}
+	
+	/**
+	 * Constructor for a SessionManager that pairs players through the given
+	 * matchmaker.
+	 * 
+	 * @param  matchmaker		The matchmaker
+	 */
+	public SessionManager(Matchmaker matchmaker)
+	{
+		this(matchmaker, new SessionManager[1], 0);
+	}
+	
+	/**
+	 * Constructor for one shard of a sharded SessionManager.
+	 * 
+	 * @param  matchmaker		The matchmaker shared by all shards
+	 * @param  shards			The session managers of all shards
+	 * @param  shard			The index of this shard
+	 */
+	private SessionManager(Matchmaker matchmaker, SessionManager[] shards,
+		int shard)
+	{
+		this.matchmaker = matchmaker;
+		this.shards = shards;
+		this.shard = shard;
+		sessions = new SessionTable(shard, shards.length);
+		shards[shard] = this;
+	}
+	
+	/**
+	 * Creates the session managers for a sharded server. Each shard owns the
+	 * sessions it creates, and session ids are striped across the shards so
+	 * any shard can tell which one owns a session. Waiting players are shared
+	 * so that players arriving on different shards are still paired.
+	 * 
+	 * @param  count			The number of shards
+	 * @return shards			The session managers, one per shard
+	 */
+	public static SessionManager[] createShards(int count)
+	{
+		SessionManager[] shards = new SessionManager[count];
+		Matchmaker matchmaker = new Matchmaker();
+		for (int i = 0; i < count; i++)
+		{
+			new SessionManager(matchmaker, shards, i);
+		}
+		return shards;
+	}
+	
+	/**
+	 * Runs each new session as an actor on the given thread pool. Without a
+	 * pool, sessions run on the receive thread.
+	 * 
+	 * @param  pool				The thread pool
+	 */
+	public void setExecutor(Executor pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * Counts joins, rounds and open sessions in the given metrics.
+	 * 
+	 * @param  metrics			The metrics
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Gets this shard's sessions. Neither the session manager nor any
+	 * session is locked, so joins and quits go on while the table is copied.
+	 * 
+	 * @return sessions			The sessions in slot order, with null for
+	 *							free slots
+	 */
+	public MouseCatElephantServerState[] getSessions()
+	{
+		return sessions.toArray();
+	}
 	
 	//Exported Operations
 	
 	/**
-	 * Connects a player to a session. Creates a new session if necessary.
+	 * Connects a player to a session. The player takes the waiting session
+	 * if there is one, and otherwise creates a session and waits in it.
+	 * Taking and offering are each one compare-and-set on the matchmaker,
+	 * so a player who loses a race to offer goes round again and takes the
+	 * winner's session. A session created for a player who then finds
+	 * someone waiting is removed again.
 	 * 
 	 * @param  proxy			The proxy for the connecting player
 	 * @param  name				The name of the player
 	 * 
 	 * @throws IOEXception		Thrown if an I/O error occurred
 	 */
-	public synchronized void join (ViewProxy proxy, String name)
+	public void join (ViewProxy proxy, String name)
 		throws IOException
 		{
-			MouseCatElephantServerState model = sessions.get(key);
-			int id = 1;
-			if(model == null)
+			MouseCatElephantServerState model, created = null;
+			int id;
+			for (;;)
 			{
-				model = new MouseCatElephantServerState();
-				sessions.put(key, model);
-				id = 0;
+				model = matchmaker.peek();
+				if (model != null)
+				{
+					if (matchmaker.take(model) && model.addModelListener(proxy))
+					{
+						id = 1;
+						break;
+					}
+				} else
+				{
+					if (created == null)
+					{
+						created = createSession();
+						created.addModelListener(proxy);
+					}
+					if (matchmaker.offer(created))
+					{
+						model = created;
+						id = 0;
+						break;
+					}
+				}
 			}
-			model.addModelListener(proxy);
+			if (created != null && model != created)
+			{
+				removeSession(created);
+			}
+			
 			proxy.setViewListener(model);
+			proxy.setActor(model.getActor());
 			proxy.setPlayerInfo(id, null);
-			proxy.setSession(key);
-			model.join(proxy, name);
-
-			if (id == 1)
+			proxy.setSession(model.getSession());
+			if (metrics != null)
 			{
-				incrementKey();
+				metrics.joined();
 			}
+			joinSession(model, proxy, name);
 		}
 	
 	/**
-	 * Removes a session if a player quits.
+	 * Removes a session when a player quits or goes away. A session with an
+	 * actor is removed on the actor, after the messages already queued for
+	 * it; its slot can then be reused without those messages reaching the
+	 * new session. A session that has already ended is left alone, and so is
+	 * a session the player is not in: session ids come round again, so the
+	 * id of a long-ended session can name a new one.
 	 * 
-	 * @param	id				The session id
+	 * @param	id				The session id, or 0 or less if the player
+	 *							never joined a session
+	 * @param	proxy			The proxy of the player
 	 * 
 	 * @throws 	IOException		Thrown if an I/O error occurred
 	 */
-	public synchronized void quit(int id) throws IOException
+	public void endSession(int id, ViewProxy proxy) throws IOException
 	{
-		sessions.remove(id);
-		if (id == key) // true if a lone player quits
+		if (id <= 0)
+			return;		// the player never joined a session
+		
+		int owner = SessionTable.shardOf(id, shards.length);
+		if (owner != shard)
 		{
-			incrementKey();
+			shards[owner].endSession(id, proxy);
+			return;
 		}
+		
+		final MouseCatElephantServerState model;
+		synchronized (this)
+		{
+			model = sessions.get(id);
+		}
+		if (model == null || !model.hasPlayer(proxy))
+			return;
+		
+		Executor actor = model.getActor();
+		if (actor == null)
+		{
+			removeSession(model);
+			return;
+		}
+		
+		actor.execute(new Runnable()
+		{
+			public void run()
+			{
+				removeSession(model);
+			}
+		});
 	}
 	
 	/**
-	 * Changes the key used to track sessions.
+	 * Joins a player to a session, on the session's actor if it has one.
+	 * 
+	 * @param  model			The session
+	 * @param  proxy			The proxy for the joining player
+	 * @param  name				The name of the player
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	private synchronized void incrementKey()
+	private void joinSession(final MouseCatElephantServerState model,
+		final ViewProxy proxy, final String name) throws IOException
 	{
-		// Get a new session key
-		while( sessions.containsKey(key) )
+		Executor actor = model.getActor();
+		if (actor == null)
 		{
-			if (key == -1)
+			model.join(proxy, name);
+			return;
+		}
+		
+		actor.execute(new Runnable()
+		{
+			public void run()
 			{
-				key += 2;
-			} else
-				key++;
+				try
+				{
+					model.join(proxy, name);
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Creates a session under a newly allocated id.
+	 * 
+	 * @return model			The new session
+	 */
+	private synchronized MouseCatElephantServerState createSession()
+	{
+		int id = sessions.allocate();
+		MouseCatElephantServerState model = new MouseCatElephantServerState(id);
+		
+		if (pool != null)
+		{
+			model.setActor(new SessionActor(pool));
+		}
+		if (metrics != null)
+		{
+			model.setMetrics(metrics);
+			metrics.session(1);
+		}
+		sessions.put(id, model);
+		return model;
+	}
+	
+	/**
+	 * Removes a session and frees its slot.
+	 * 
+	 * @param  model			The session
+	 */
+	private synchronized void removeSession(MouseCatElephantServerState model)
+	{
+		int id = model.getSession();
+		if (sessions.get(id) != model)
+			return;		// already removed when the other player quit
+		sessions.remove(id);
+		if (metrics != null)
+		{
+			metrics.session(-1);
 		}
 	}
 	
 	/**
 	 * Select an animal.
 	 * 
+	 * @param	id				The ID of the player making the selection
 	 * @param	a				The code for the animal selected
 	 * 
 	 * @throws	IOException		Thrown if an I/O error occurred
 	 */
-	public synchronized void selectAnimal(int a) throws IOException {}
+	public synchronized void selectAnimal(int id, int a) throws IOException {}
 
 	/**
 	 * Begin a new round.
@@ -100,4 +308,26 @@ public class SessionManager implements ViewListener
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
 	public synchronized void newRound() throws IOException {}
+	
+	/**
+	 * Select animals for a batch of rounds.
+	 * 
+	 * @param	id				The ID of the player making the selections
+	 * @param	rounds			The number of rounds
+	 * @param	choices			The packed animal choices
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public synchronized void selectBatch(int id, int rounds, byte[] choices)
+		throws IOException {}
+	
+	/**
+	 * Quit the game. A player who has not joined has no session to leave;
+	 * the mailbox manager drops the proxy and ends sessions by id.
+	 * 
+	 * @param	i				The exit code
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public synchronized void quit(int i) throws IOException {}
 }
@@ -0,0 +1,216 @@
+/**
+ * Class SessionTable hands out session ids and holds the sessions of one
+ * shard of the MouseCatElephant server. A session id packs the slot the
+ * session is stored in with a generation number. Freed slots go on a free
+ * list and are reused, and each reuse bumps the slot's generation, so an id
+ * from a session that has ended does not match the session now in its slot.
+ * Allocating, finding and removing a session are all constant time.
+ * 
+ * The generation has eleven bits, so it comes round again after 2048
+ * reuses of a slot. The free list is first in, first out, so a slot is
+ * reused only after every slot freed before it, which keeps a hot slot from
+ * cycling through its generations while others sit free. Even so, an old id
+ * can match a new session; SessionManager checks that a session it is asked
+ * to end is the caller's own.
+ * 
+ * Slots are striped across the shards: slot numbers step by the number of
+ * shards, so the owner of any session id can be read from the id itself.
+ * 
+ * Allocating, storing, finding and removing must all be done under one
+ * lock. Copying the sessions need not be: the slots are published so that
+ * a reader without the lock sees every session stored before it began,
+ * though perhaps not one stored while it copies.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class SessionTable
+{
+	private static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+	
+	private volatile AtomicReferenceArray<MouseCatElephantServerState> sessions;
+	private int[] generations;
+	private int[] nextFree;		// links the free list through unused slots
+	private int freeHead = -1, freeTail = -1;	// oldest and newest free slots
+	private volatile int used = 0;		// slots handed out at least once
+	private int capacity;
+	private int stride, offset;
+	
+	/**
+	 * Constructor for the SessionTable object.
+	 * 
+	 * @param shard			The index of the shard this table belongs to
+	 * @param shards		The number of shards
+	 */
+	public SessionTable(int shard, int shards)
+	{
+		stride = shards;
+		offset = shard;
+		capacity = (SLOT_MASK - 1 - shard) / shards + 1;
+		
+		int length = Math.min(64, capacity);
+		sessions = new AtomicReferenceArray<MouseCatElephantServerState>(length);
+		generations = new int[length];
+		nextFree = new int[length];
+	}
+	
+	/**
+	 * Gets the shard that owns a session id.
+	 * 
+	 * @param  id			The session id
+	 * @param  shards		The number of shards
+	 * @return shard		The index of the owning shard
+	 */
+	public static int shardOf(int id, int shards)
+	{
+		return ((id & SLOT_MASK) - 1) % shards;
+	}
+	
+	/**
+	 * Reserves a slot and gets the id of the session that will go in it.
+	 * Ids are always positive.
+	 * 
+	 * @return id			The session id
+	 * 
+	 * @throws IllegalStateException	Thrown if every slot is in use
+	 */
+	public int allocate()
+	{
+		int slot;
+		if (freeHead >= 0)
+		{
+			slot = freeHead;
+			freeHead = nextFree[slot];
+			if (freeHead < 0)
+			{
+				freeTail = -1;
+			}
+		} else
+		{
+			if (used == capacity)
+				throw new IllegalStateException("Too many sessions");
+			if (used == sessions.length())
+			{
+				grow();
+			}
+			slot = used++;
+		}
+		return generations[slot] << SLOT_BITS | (slot * stride + offset + 1);
+	}
+	
+	/**
+	 * Stores a session under an id from allocate().
+	 * 
+	 * @param id			The session id
+	 * @param model			The session
+	 */
+	public void put(int id, MouseCatElephantServerState model)
+	{
+		sessions.set(slotOf(id), model);
+	}
+	
+	/**
+	 * Gets a session.
+	 * 
+	 * @param  id			The session id
+	 * @return model		The session, or null if it has ended
+	 */
+	public MouseCatElephantServerState get(int id)
+	{
+		int slot = find(id);
+		return slot < 0 ? null : sessions.get(slot);
+	}
+	
+	/**
+	 * Removes a session and frees its slot.
+	 * 
+	 * @param  id			The session id
+	 * @return model		The session that was removed, or null if it had
+	 *						already ended
+	 */
+	public MouseCatElephantServerState remove(int id)
+	{
+		int slot = find(id);
+		if (slot < 0)
+			return null;
+		
+		MouseCatElephantServerState model = sessions.get(slot);
+		sessions.set(slot, null);
+		generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+		nextFree[slot] = -1;
+		if (freeTail >= 0)
+		{
+			nextFree[freeTail] = slot;
+		} else
+			freeHead = slot;
+		freeTail = slot;
+		return model;
+	}
+	
+	/**
+	 * Copies the sessions in the slots handed out so far. Need not be called
+	 * under the table's lock.
+	 * 
+	 * @return sessions		The sessions in slot order, with null for free
+	 *						slots
+	 */
+	public MouseCatElephantServerState[] toArray()
+	{
+		int count = used;		// read before the slots, which grow first
+		AtomicReferenceArray<MouseCatElephantServerState> slots = sessions;
+		MouseCatElephantServerState[] copy = new MouseCatElephantServerState[count];
+		for (int i = 0; i < count; i++)
+		{
+			copy[i] = slots.get(i);
+		}
+		return copy;
+	}
+	
+	/**
+	 * Gets the slot a session id points to.
+	 */
+	private int slotOf(int id)
+	{
+		return ((id & SLOT_MASK) - 1) / stride;
+	}
+	
+	/**
+	 * Gets the slot holding a live session with the given id.
+	 * 
+	 * @return slot			The slot, or -1 if there is no such session
+	 */
+	private int find(int id)
+	{
+		int index = (id & SLOT_MASK) - 1;
+		if (id <= 0 || index < 0 || index % stride != offset)
+			return -1;
+		int slot = index / stride;
+		if (slot >= used || sessions.get(slot) == null
+			|| generations[slot] != id >>> SLOT_BITS)
+			return -1;
+		return slot;
+	}
+	
+	/**
+	 * Doubles the arrays, up to the capacity of the shard.
+	 */
+	private void grow()
+	{
+		int length = (int) Math.min(2L * sessions.length(), capacity);
+		AtomicReferenceArray<MouseCatElephantServerState> grown =
+			new AtomicReferenceArray<MouseCatElephantServerState>(length);
+		for (int i = 0; i < sessions.length(); i++)
+		{
+			grown.set(i, sessions.get(i));
+		}
+		sessions = grown;
+		generations = Arrays.copyOf(generations, length);
+		nextFree = Arrays.copyOf(nextFree, length);
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Class SocketTransport carries the datagrams of a MouseCatElephant client
+ * or server over a blocking UDP socket.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+
+public class SocketTransport implements Transport
+{
+	private DatagramSocket mailbox;
+	private int timeout = 0;		// the socket's current receive timeout
+	
+	private ThreadLocal<DatagramPacket> sendPackets = new ThreadLocal<DatagramPacket>()
+	{
+		protected DatagramPacket initialValue()
+		{
+			return new DatagramPacket(new byte[0], 0);
+		}
+	};
+	
+	/**
+	 * Constructor for the SocketTransport object.
+	 * 
+	 * @param mailbox			The bound socket
+	 */
+	public SocketTransport(DatagramSocket mailbox)
+	{
+		this.mailbox = mailbox;
+	}
+	
+	/**
+	 * Sends a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void send(DatagramPacket packet) throws IOException
+	{
+		mailbox.send(packet);
+	}
+	
+	/**
+	 * Sends part of a buffer as a datagram to an address.
+	 * 
+	 * @param  data				The buffer holding the datagram
+	 * @param  offset			The offset of the datagram in the buffer
+	 * @param  length			The length of the datagram
+	 * @param  address			The address to send it to
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public void send(byte[] data, int offset, int length, SocketAddress address)
+		throws IOException
+	{
+		DatagramPacket packet = sendPackets.get();
+		packet.setData(data, offset, length);
+		packet.setSocketAddress(address);
+		mailbox.send(packet);
+	}
+	
+	/**
+	 * Receives a datagram.
+	 * 
+	 * @param  packet			The packet
+	 * @param  timeout			The longest time to wait in milliseconds, or 0
+	 *							to wait for as long as it takes
+	 * @return received			True if a datagram was received
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public boolean receive(DatagramPacket packet, int timeout) throws IOException
+	{
+		if (timeout != this.timeout)
+		{
+			mailbox.setSoTimeout(timeout);
+			this.timeout = timeout;
+		}
+		
+		packet.setLength(packet.getData().length - packet.getOffset());
+		try
+		{
+			mailbox.receive(packet);
+		} catch (SocketTimeoutException e)
+		{
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the address of the socket.
+	 * 
+	 * @return address			The local address
+	 */
+	public SocketAddress getLocalAddress()
+	{
+		return mailbox.getLocalSocketAddress();
+	}
+	
+	/**
+	 * Closes the socket.
+	 */
+	public void close()
+	{
+		mailbox.close();
+	}
+}
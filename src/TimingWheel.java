@@ -0,0 +1,106 @@
+/**
+ * Class TimingWheel finds idle connections for the MouseCatElephant server.
+ * Each proxy sits in the wheel slot for the tick its idle deadline falls on.
+ * Receiving a datagram only records the tick the proxy was last active; when
+ * a slot comes up, proxies that have been active since are moved to the slot
+ * for their new deadline, and the rest have expired. Each proxy is looked at
+ * about once per timeout, so a tick costs O(1) per connection.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+public class TimingWheel
+{
+	private ViewProxy[] slots;
+	private int mask;
+	private int timeout;
+	private long tickNanos;
+	private long origin = System.nanoTime();
+	private long lastTick = 0;
+	
+	/**
+	 * Constructor for the TimingWheel object.
+	 * 
+	 * @param tickMillis		The length of a tick in milliseconds
+	 * @param timeout			The idle timeout in ticks
+	 */
+	public TimingWheel(long tickMillis, int timeout)
+	{
+		int size = 1;
+		while (size <= timeout + 1)
+		{
+			size <<= 1;
+		}
+		slots = new ViewProxy[size];
+		mask = size - 1;
+		this.timeout = timeout;
+		tickNanos = tickMillis * 1000000L;
+	}
+	
+	/**
+	 * Gets the current tick.
+	 * 
+	 * @return tick			The number of ticks since the wheel was created
+	 */
+	public long currentTick()
+	{
+		return (System.nanoTime() - origin) / tickNanos;
+	}
+	
+	/**
+	 * Starts tracking a new proxy.
+	 * 
+	 * @param proxy			The proxy
+	 * @param tick			The current tick
+	 */
+	public void add(ViewProxy proxy, long tick)
+	{
+		proxy.setLastActive(tick);
+		insert(proxy, tick + timeout + 1);
+	}
+	
+	/**
+	 * Advances the wheel to the given tick.
+	 * 
+	 * @param  tick			The current tick
+	 * @return expired		The proxies that have timed out, linked through
+	 *						their timer links, or null if there are none
+	 */
+	public ViewProxy advance(long tick)
+	{
+		ViewProxy expired = null;
+		while (lastTick < tick)
+		{
+			lastTick++;
+			int slot = (int) (lastTick & mask);
+			ViewProxy proxy = slots[slot];
+			slots[slot] = null;
+			while (proxy != null)
+			{
+				ViewProxy next = proxy.getTimerNext();
+				if (!proxy.isClosed())
+				{
+					long deadline = proxy.getLastActive() + timeout + 1;
+					if (deadline <= lastTick)
+					{
+						proxy.setTimerNext(expired);
+						expired = proxy;
+					} else
+						insert(proxy, deadline);
+				}
+				proxy = next;
+			}
+		}
+		return expired;
+	}
+	
+	/**
+	 * Links a proxy into the slot for a tick.
+	 */
+	private void insert(ViewProxy proxy, long tick)
+	{
+		int slot = (int) (tick & mask);
+		proxy.setTimerNext(slots[slot]);
+		slots[slot] = proxy;
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Interface Transport specifies how the MouseCatElephant client and server
+ * send and receive datagrams. SocketTransport and ChannelTransport carry them
+ * over UDP; MemoryTransport carries them between objects in one program.
+ * Any thread may send; one thread at a time receives.
+ * 
+ * @author	Adam Warner
+ * @version 10/18/2026
+ */
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+
+public interface Transport 
+{
+	/**
+	 * Sends the datagram held in a packet to the packet's address. Like UDP,
+	 * a transport may drop a datagram without telling the sender.
+	 * 
+	 * @param	packet			The packet
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public void send(DatagramPacket packet) throws IOException;
+	
+	/**
+	 * Sends part of a buffer as a datagram to an address. Senders that keep
+	 * their destination's address use this to send without making a packet.
+	 * 
+	 * @param	data			The buffer holding the datagram
+	 * @param	offset			The offset of the datagram in the buffer
+	 * @param	length			The length of the datagram
+	 * @param	address			The address to send it to
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public void send(byte[] data, int offset, int length, SocketAddress address)
+		throws IOException;
+	
+	/**
+	 * Receives a datagram into a packet, setting its length and the address
+	 * of the sender. A datagram too long for the packet's buffer is cut short.
+	 * 
+	 * @param	packet			The packet
+	 * @param	timeout			The longest time to wait in milliseconds, or 0
+	 *							to wait for as long as it takes
+	 * @return	received		True if a datagram was received, false if the
+	 *							time ran out first
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public boolean receive(DatagramPacket packet, int timeout) throws IOException;
+	
+	/**
+	 * Gets the address this transport receives on.
+	 * 
+	 * @return	address			The local address
+	 */
+	public SocketAddress getLocalAddress();
+	
+	/**
+	 * Closes the transport.
+	 */
+	public void close();
+}
@@ -23,11 +23,12 @@ public interface ViewListener
 	/**
 	 * Select an animal.
 	 * 
+	 * @param	id				The ID of the player making the selection
 	 * @param	a				The code for the animal selected
 	 * 
 	 * @throws	IOException		Thrown if an I/O error occurred
 	 */
-	public void selectAnimal(int a) throws IOException;
+	public void selectAnimal(int id, int a) throws IOException;
 	
 	/**
 	 * Begin a new round.
@@ -36,6 +37,19 @@ public interface ViewListener
 	 */
 	public void newRound() throws IOException;
 	
+	/**
+	 * Select animals for a whole batch of rounds at once. The choices are
+	 * packed four to a byte, two bits each, with the first round in the low
+	 * bits of the first byte.
+	 * 
+	 * @param	id				The ID of the player making the selections
+	 * @param	rounds			The number of rounds (1 to 255)
+	 * @param	choices			The packed animal choices
+	 * 
+	 * @throws	IOException		Thrown if an I/O error occurred
+	 */
+	public void selectBatch(int id, int rounds, byte[] choices) throws IOException;
+	
 	/**
 	 * Quit the game.
 	 * 
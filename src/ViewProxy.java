@@ -12,33 +12,183 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.SocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 public class ViewProxy implements ModelListener
 {
-	private DatagramSocket mailbox;
+	/** The length of the header on a multiplexed datagram: 'X' and the stream id. */
+	public static final int MUX_HEADER = 3;
+	
+	/** The number of streams a client may multiplex; stream ids run below it. */
+	public static final int MAX_STREAMS = 4096;
+	
+	// Precomputed payloads for every message with a small, fixed set of values
+	private static final byte[] ROUND = { 'R' };
+	private static final byte[] QUIT = { 'Q' };
+	private static final byte[][] IDS = new byte[2][];
+	private static final byte[][] CHOICES = new byte[2 * 3][];	// [id*3 + animal]
+	private static final byte[][] OUTCOMES = new byte[3 * 4 * 3][];	// [(a1*4 + vs)*3 + a2]
+	
+	static
+	{
+		for (int id = 0; id < 2; id++)
+		{
+			IDS[id] = new byte[] { 'I', (byte) id };
+			for (int animal = 0; animal < 3; animal++)
+			{
+				CHOICES[id*3 + animal] = new byte[] { 'C', (byte) id, (byte) animal };
+			}
+		}
+		for (int a1 = 0; a1 < 3; a1++)
+		{
+			for (int vs = 0; vs < 4; vs++)
+			{
+				for (int a2 = 0; a2 < 3; a2++)
+				{
+					OUTCOMES[(a1*4 + vs)*3 + a2] =
+						new byte[] { 'O', (byte) a1, (byte) vs, (byte) a2 };
+				}
+			}
+		}
+	}
+	
+	private Transport transport;
 	private SocketAddress clientAddress;
 	private ViewListener viewListener;
+	private Executor actor;
+	private Metrics metrics;
+	private OverloadGovernor governor;
 	private int id, session;
 	
+	// Idle tracking, owned by the receive thread
+	private long lastActive;
+	private ViewProxy timerNext;
+	private boolean closed = false;
+	private long bucketFull;
+	
+	// Reusable outgoing message buffer, guarded by this proxy's monitor
+	private byte[] outbox = new byte[128];
+	private OutboundRing outbound;
+	
+	// Messages held back for one compound datagram, guarded by this proxy's monitor
+	private byte[] pending;
+	private int pendingLength, pendingCount;
+	
+	// Multiplexing: a stream's replies carry its header, and the proxy for an
+	// address owns the proxies of its streams (owned by the receive thread)
+	private byte[] frame;
+	private ViewProxy[] streams;
+	
+	// Set once the client sends an envelope, guarded by this proxy's monitor
+	private ReliableChannel reliable;
+	
 	/**
 	 * Constructor for the ViewProxy object.
 	 * 
-	 * @param  mailbox			The mailbox for the server
+	 * @param  transport		The transport for the server
 	 * @param  clientAddress	The mailbox for the client
-	 * 
-	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	public ViewProxy(DatagramSocket mailbox, SocketAddress clientAddress)
-		throws IOException
+	public ViewProxy(Transport transport, SocketAddress clientAddress)
 	{
-		this.mailbox = mailbox;
+		this.transport = transport;
 		this.clientAddress = clientAddress;
 	}
 	
+	/**
+	 * Constructor for the proxy of one stream multiplexed over a client's
+	 * address. Each datagram of the stream, in either direction, starts with
+	 * 'X' and the stream id as an unsigned short, followed by an ordinary
+	 * message.
+	 * 
+	 * @param  parent			The proxy for the client's address
+	 * @param  stream			The stream id
+	 */
+	public ViewProxy(ViewProxy parent, int stream)
+	{
+		transport = parent.transport;
+		clientAddress = parent.clientAddress;
+		outbound = parent.outbound;
+		metrics = parent.metrics;
+		governor = parent.governor;
+		
+		frame = new byte[OutboundRing.SLOT_SIZE];
+		frame[0] = 'X';
+		frame[1] = (byte) (stream >> 8);
+		frame[2] = (byte) stream;
+		if (parent.pending != null)
+		{
+			setCompound(true);
+		}
+	}
+	
 	// Exported operations
 	
+	/**
+	 * Gets the proxy for a stream of this client.
+	 * 
+	 * @param  stream			The stream id
+	 * @return proxy			The proxy, or null if the stream is not open
+	 */
+	public ViewProxy getStream(int stream)
+	{
+		if (streams == null || stream >= streams.length)
+			return null;
+		return streams[stream];
+	}
+	
+	/**
+	 * Opens a stream of this client.
+	 * 
+	 * @param  stream			The stream id
+	 * @return proxy			The proxy for the new stream
+	 * 
+	 * @throws IllegalArgumentException		Thrown if the stream id is not
+	 *										below MAX_STREAMS
+	 */
+	public ViewProxy openStream(int stream)
+	{
+		if (stream < 0 || stream >= MAX_STREAMS)
+			throw new IllegalArgumentException("No such stream: " + stream);
+		
+		if (streams == null || stream >= streams.length)
+		{
+			int size = (streams == null) ? 16 : streams.length;
+			while (size <= stream)
+			{
+				size <<= 1;
+			}
+			streams = (streams == null) ? new ViewProxy[size]
+				: Arrays.copyOf(streams, size);
+		}
+		ViewProxy proxy = new ViewProxy(this, stream);
+		streams[stream] = proxy;
+		return proxy;
+	}
+	
+	/**
+	 * Closes a stream of this client.
+	 * 
+	 * @param  stream			The stream id
+	 */
+	public void closeStream(int stream)
+	{
+		streams[stream] = null;
+	}
+	
+	/**
+	 * Gets the proxies of this client's streams.
+	 * 
+	 * @return streams			The proxies indexed by stream id, with nulls
+	 *							for closed streams, or null if no stream was
+	 *							ever opened
+	 */
+	public ViewProxy[] getStreams()
+	{
+		return streams;
+	}
+	
 	/**
 	 * Set the view listener for this proxy object.
 	 * 
@@ -49,6 +199,109 @@ public class ViewProxy implements ModelListener
 		this.viewListener = viewListener;
 	}
 	
+	/**
+	 * Gets the address of the client.
+	 * 
+	 * @return clientAddress	The mailbox for the client
+	 */
+	public SocketAddress getClientAddress()
+	{
+		return clientAddress;
+	}
+	
+	/**
+	 * Queue this proxy's messages on an outbound ring instead of sending
+	 * them on the calling thread.
+	 * 
+	 * @param outbound			The outbound ring, or null to send directly
+	 */
+	public void setOutboundRing(OutboundRing outbound)
+	{
+		this.outbound = outbound;
+	}
+	
+	/**
+	 * Count invalid messages from this client.
+	 * 
+	 * @param metrics			The metrics, or null to count nothing
+	 */
+	public void setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Report how long each message handed to the session actor waited and
+	 * took to handle. A message handled on the receive thread is timed by
+	 * the mailbox manager instead.
+	 * 
+	 * @param governor			The overload governor, or null
+	 */
+	public void setOverloadGovernor(OverloadGovernor governor)
+	{
+		this.governor = governor;
+	}
+	
+	/**
+	 * Hold back messages until flush() and send them together in one 'U'
+	 * datagram. The client must understand compound datagrams. Room is left
+	 * for the headers the datagram may need.
+	 * 
+	 * Only the reports from one game event are combined. The 'R' that
+	 * starts the next round answers a player's request, so it still goes
+	 * out on its own after the round's outcome.
+	 * 
+	 * @param compound			True to combine messages
+	 */
+	public synchronized void setCompound(boolean compound)
+	{
+		if (compound)
+		{
+			pending = new byte[OutboundRing.SLOT_SIZE - ReliableChannel.HEADER
+				- (frame != null ? MUX_HEADER : 0)];
+			pending[0] = 'U';
+		} else
+			pending = null;
+	}
+	
+	/**
+	 * Sends the messages held back since the last flush. A single message is
+	 * sent as it is, without the compound header.
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public synchronized void flush() throws IOException
+	{
+		if (pendingCount == 1)
+		{
+			transmit(pending, 1, pendingLength - 1);
+		} else if (pendingCount > 1)
+			transmit(pending, 0, pendingLength);
+		pendingLength = 0;
+		pendingCount = 0;
+	}
+	
+	/**
+	 * Set the actor that runs this player's messages. Without an actor each
+	 * message is handled on the thread that received it.
+	 * 
+	 * @param actor				The session actor, or null
+	 */
+	public void setActor(Executor actor)
+	{
+		this.actor = actor;
+	}
+	
+	/**
+	 * Tells whether this player's messages are handed to a session actor.
+	 * 
+	 * @return queued			True if they run on an actor
+	 */
+	public boolean hasActor()
+	{
+		return actor != null;
+	}
+	
 	/**
 	 * Sends an animal selection message to the client.
 	 * 
@@ -57,18 +310,18 @@ public class ViewProxy implements ModelListener
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	public void animalSelected(int id, int animal) throws IOException
+	public synchronized void animalSelected(int id, int animal) throws IOException
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(baos);	
-		
-		out.writeByte('C');
-		out.writeByte(id);
-		out.writeByte(animal);
-		out.close();
+		if (id >= 0 && id < 2 && animal >= 0 && animal < 3)
+		{
+			send(CHOICES[id*3 + animal]);
+			return;
+		}
 		
-		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, clientAddress));
+		outbox[0] = 'C';
+		outbox[1] = (byte) id;
+		outbox[2] = (byte) animal;
+		send(outbox, 3);
 	}
 
 	/**
@@ -76,14 +329,33 @@ public class ViewProxy implements ModelListener
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	public void newRoundSelected() throws IOException 
+	public synchronized void newRoundSelected() throws IOException 
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(baos);	
-		out.writeByte('R');
-		out.close();
-		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, clientAddress));
+		send(ROUND);
+	}
+	
+	/**
+	 * Sends the client the results of a batch of rounds.
+	 * 
+	 * @param  rounds			The number of rounds played
+	 * @param  results			Who scored in each round, packed
+	 * @param  p1Score			The score of player 1
+	 * @param  p2Score			The score of player 2
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public synchronized void reportBatch(int rounds, byte[] results, int p1Score,
+		int p2Score) throws IOException
+	{
+		int length = (rounds + 3) / 4;
+		outbox[0] = 'M';
+		outbox[1] = (byte) rounds;
+		System.arraycopy(results, 0, outbox, 2, length);
+		outbox[length + 2] = (byte) (p1Score >> 8);
+		outbox[length + 3] = (byte) p1Score;
+		outbox[length + 4] = (byte) (p2Score >> 8);
+		outbox[length + 5] = (byte) p2Score;
+		send(outbox, length + 6);
 	}
 
 	/**
@@ -95,19 +367,19 @@ public class ViewProxy implements ModelListener
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	public void reportOutcome(int a1, int vs, int a2) throws IOException 
+	public synchronized void reportOutcome(int a1, int vs, int a2) throws IOException 
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(baos);
-		
-		out.writeByte('O');
-		out.writeByte(a1);
-		out.writeByte(vs);
-		out.writeByte(a2);
-		out.close();
+		if (a1 >= 0 && a1 < 3 && vs >= 0 && vs < 4 && a2 >= 0 && a2 < 3)
+		{
+			send(OUTCOMES[(a1*4 + vs)*3 + a2]);
+			return;
+		}
 		
-		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, clientAddress));
+		outbox[0] = 'O';
+		outbox[1] = (byte) a1;
+		outbox[2] = (byte) vs;
+		outbox[3] = (byte) a2;
+		send(outbox, 4);
 	}
 
 	/**
@@ -118,18 +390,12 @@ public class ViewProxy implements ModelListener
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
-	public void reportScore(int id, int score) throws IOException
+	public synchronized void reportScore(int id, int score) throws IOException
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(baos);
-		
-		out.writeByte('S');
-		out.writeByte(id);
-		out.writeByte(score);
-		out.close();
-		
-		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, clientAddress));
+		outbox[0] = 'S';
+		outbox[1] = (byte) id;
+		outbox[2] = (byte) score;
+		send(outbox, 3);
 	}
 
 	/**
@@ -140,28 +406,22 @@ public class ViewProxy implements ModelListener
 	 * 
 	 * @exception	IOException
 	 */
-	public void setPlayerInfo(int id, String name) throws IOException
+	public synchronized void setPlayerInfo(int id, String name) throws IOException
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(baos);
-
-		if (name != null)
+		if (name == null)
 		{
-			out.writeByte('N');
-			out.writeUTF(name);
-		} else
-		{
-			out.writeByte('I');
-			if( id != 0)
-			{
-				this.id = 3;
-			}
+			this.id = id;
+			send(IDS[id]);
+			return;
 		}
 		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeByte('N');
+		out.writeUTF(name);
 		out.writeByte(id);
 		out.close();
-		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, clientAddress));
+		send(baos.toByteArray());
 	}
 
 	/**
@@ -169,14 +429,9 @@ public class ViewProxy implements ModelListener
 	 * 
 	 * @param IOException		Thrown if an I/O error occurred
 	 */
-	public void quit() throws IOException
+	public synchronized void quit() throws IOException
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		DataOutputStream out = new DataOutputStream(baos);
-		out.writeByte('Q');
-		out.close();
-		byte[] payload = baos.toByteArray();
-		mailbox.send(new DatagramPacket(payload, payload.length, clientAddress));
+		send(QUIT);
 	}
 	
 	/**
@@ -187,48 +442,489 @@ public class ViewProxy implements ModelListener
 		session = id;
 	}
 	
+	/**
+	 * Records the tick this client was last heard from.
+	 * 
+	 * @param tick				The tick
+	 */
+	public void setLastActive(long tick)
+	{
+		lastActive = tick;
+	}
+	
+	/**
+	 * Gets the tick this client was last heard from.
+	 * 
+	 * @return tick				The tick
+	 */
+	public long getLastActive()
+	{
+		return lastActive;
+	}
+	
+	/**
+	 * Sets the next proxy in the same timing wheel slot.
+	 * 
+	 * @param next				The next proxy
+	 */
+	public void setTimerNext(ViewProxy next)
+	{
+		timerNext = next;
+	}
+	
+	/**
+	 * Gets the next proxy in the same timing wheel slot.
+	 * 
+	 * @return next				The next proxy
+	 */
+	public ViewProxy getTimerNext()
+	{
+		return timerNext;
+	}
+	
+	/**
+	 * Sets the time at which this client's rate limit bucket is full again.
+	 * 
+	 * @param time				The time in nanoseconds
+	 */
+	public void setBucketFull(long time)
+	{
+		bucketFull = time;
+	}
+	
+	/**
+	 * Gets the time at which this client's rate limit bucket is full again.
+	 * 
+	 * @return time				The time in nanoseconds
+	 */
+	public long getBucketFull()
+	{
+		return bucketFull;
+	}
+	
+	/**
+	 * Marks this proxy as removed from its mailbox manager.
+	 */
+	public void close()
+	{
+		closed = true;
+		if (reliable != null)
+		{
+			reliable.close();
+		}
+	}
+	
+	/**
+	 * Tests whether this proxy has been removed from its mailbox manager.
+	 * 
+	 * @return closed			True if the proxy is closed
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+	
+	/**
+	 * Ends the session of a client that has gone silent, as if it had quit.
+	 * 
+	 * @return session			The session id, or 0 if the client never joined
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public int expire() throws IOException
+	{
+		deliver('Q', 0);
+		return session;
+	}
+	
+	/**
+	 * Sends a payload to the client.
+	 * 
+	 * @param  payload			The message to send
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void send(byte[] payload) throws IOException
+	{
+		send(payload, payload.length);
+	}
+	
+	/**
+	 * Sends the start of a buffer to the client, or adds it to the compound
+	 * datagram if messages are being combined. Callers hold this proxy's
+	 * monitor.
+	 * 
+	 * @param  payload			The buffer holding the message
+	 * @param  length			The length of the message
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void send(byte[] payload, int length) throws IOException
+	{
+		if (pending == null)
+		{
+			transmit(payload, 0, length);
+			return;
+		}
+		
+		if (1 + pendingLength + length > pending.length)
+		{
+			flush();
+		}
+		if (pendingLength == 0)
+		{
+			pendingLength = 1;		// after the 'U'
+		}
+		System.arraycopy(payload, 0, pending, pendingLength, length);
+		pendingLength += length;
+		pendingCount++;
+	}
+	
+	/**
+	 * Sends part of a buffer to the client, in an envelope from the reliable
+	 * channel if the client asked for one. Callers hold this proxy's monitor.
+	 * 
+	 * @param  payload			The buffer holding the message
+	 * @param  offset			The offset of the message in the buffer
+	 * @param  length			The length of the message
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void transmit(byte[] payload, int offset, int length)
+		throws IOException
+	{
+		if (reliable != null)
+		{
+			reliable.send(payload, offset, length);
+		} else
+			emit(payload, offset, length);
+	}
+	
+	/**
+	 * Sends a datagram to the client. A stream's frame is reused, so callers
+	 * hold this proxy's monitor. With an outbound ring the message is copied
+	 * onto the ring and sent later by the ring's writer thread.
+	 * 
+	 * @param  payload			The buffer holding the message
+	 * @param  offset			The offset of the message in the buffer
+	 * @param  length			The length of the message
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void emit(byte[] payload, int offset, int length)
+		throws IOException
+	{
+		ServerEvents.Send event = null;
+		if (ServerEvents.Send.enabled())
+		{
+			event = new ServerEvents.Send();
+			event.begin();
+		}
+		if (frame != null)
+		{
+			System.arraycopy(payload, offset, frame, MUX_HEADER, length);
+			payload = frame;
+			offset = 0;
+			length += MUX_HEADER;
+		}
+		
+		if (outbound != null)
+		{
+			outbound.publish(payload, offset, length, clientAddress);
+		} else
+			transport.send(payload, offset, length, clientAddress);
+		if (event != null && event.shouldCommit())
+		{
+			int start = offset + (frame != null ? MUX_HEADER : 0);
+			event.session = session;
+			event.opcode = (char) payload[ReliableChannel.unwrap(payload, start,
+				offset + length - start)];
+			event.length = length;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Starts reliable delivery for this client, whose messages have begun to
+	 * arrive in envelopes. Everything sent to the client from now on goes in
+	 * an envelope too.
+	 */
+	private synchronized void openReliable()
+	{
+		reliable = new ReliableChannel(new ReliableChannel.Link()
+		{
+			public void transmit(byte[] data, int offset, int length)
+				throws IOException
+			{
+				synchronized (ViewProxy.this)
+				{
+					emit(data, offset, length);
+				}
+			}
+			
+			public int deliver(byte[] data, int offset, int length)
+				throws IOException
+			{
+				return decode(data, offset, length);
+			}
+		});
+	}
+	
 	/**
 	 * Processes an incoming datagram.
 	 * 
 	 * @param  datagram			The datagram
-	 * @return discard			Return a non-zero id to discard this proxy
+	 * @return discard			The session id to discard this proxy and end
+	 *							its session, -1 to discard a proxy that never
+	 *							joined, or 0 to keep it
 	 * 
 	 * @throws IOException		Thrown if an I/O error occurred
 	 */
 	public int process(DatagramPacket datagram) throws IOException
 	{
-		DataInputStream in = new DataInputStream(
-			new ByteArrayInputStream(datagram.getData(), 0, datagram.getLength()));
+		return process(datagram.getData(), datagram.getLength());
+	}
+	
+	/**
+	 * Processes an incoming message held in a buffer.
+	 * 
+	 * @param  data				The buffer holding the message
+	 * @param  length			The length of the message
+	 * @return discard			The session id to discard this proxy and end
+	 *							its session, -1 to discard a proxy that never
+	 *							joined, or 0 to keep it
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public int process(byte[] data, int length) throws IOException
+	{
+		return process(data, 0, length);
+	}
+	
+	/**
+	 * Processes an incoming message held in part of a buffer. The message is
+	 * decoded in place; only a join, which carries the player's name, creates
+	 * any objects.
+	 * 
+	 * @param  data				The buffer holding the message
+	 * @param  offset			The offset of the message in the buffer
+	 * @param  length			The length of the message
+	 * @return discard			The session id to discard this proxy and end
+	 *							its session, -1 to discard a proxy that never
+	 *							joined, or 0 to keep it
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	public int process(byte[] data, int offset, int length) throws IOException
+	{
+		if (!ServerEvents.Process.enabled())
+			return decode(data, offset, length);
 		
-		int choice;
+		ServerEvents.Process event = new ServerEvents.Process();
+		event.begin();
+		int discard = decode(data, offset, length);
+		if (event.shouldCommit())
+		{
+			event.session = session;
+			event.opcode = (char) (length > 0
+				? data[ReliableChannel.unwrap(data, offset, length)] : 0);
+			event.commit();
+		}
+		return discard;
+	}
+	
+	/**
+	 * Decodes a message and hands it to the view listener.
+	 * 
+	 * @param  data				The buffer holding the message
+	 * @param  offset			The offset of the message in the buffer
+	 * @param  length			The length of the message
+	 * @return discard			The session id to discard this proxy and end
+	 *							its session, -1 to discard a proxy that never
+	 *							joined, or 0 to keep it
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private int decode(byte[] data, int offset, int length) throws IOException
+	{
 		int discard = 0;
 		String name;
+		int rounds;
+		
+		byte message = (length > 0) ? data[offset] : 0;
+		if (message == '@' || message == 'A')
+		{
+			if (reliable == null)
+			{
+				openReliable();
+			}
+			return reliable.receive(data, offset, length);
+		}
 		
-		byte message = in.readByte();
+		if (message == 'C' && length < 2)
+		{
+			message = 0;	// a choice without an animal is invalid
+		} else if (message == 'J' && length < 1 + JoinCookies.LENGTH + 2)
+		{
+			message = 0;	// so is a join without a cookie and name
+		} else if (message == 'M' && (length < 2 || data[offset + 1] == 0
+			|| length < 2 + ((data[offset + 1] & 0xFF) + 3) / 4))
+		{
+			message = 0;	// and a batch without all of its rounds
+		}
 		
 		switch (message)
 		{
 		case 'J':	//join
-			name = in.readUTF();
-			viewListener.join(ViewProxy.this, name);
+			name = readName(data, offset + 1 + JoinCookies.LENGTH,
+				length - 1 - JoinCookies.LENGTH);
+			if (name != null)
+			{
+				viewListener.join(ViewProxy.this, name);
+			} else
+				discard = invalid();
 			break;
 		case 'C':	//animal choice
-			choice = in.readByte();
-			viewListener.selectAnimal(choice + id);
+			deliver(message, data[offset + 1]);
+			break;
+		case 'M':	//batch of choices
+			rounds = data[offset + 1] & 0xFF;
+			deliver(message, rounds, Arrays.copyOfRange(data, offset + 2,
+				offset + 2 + (rounds + 3) / 4));
 			break;
 		case 'R':	//new round
-			viewListener.newRound();
+			deliver(message, 0);
 			break;
 		case 'Q':	//quit
-			viewListener.quit(0);
-			discard = session;
+			deliver(message, 0);
+			discard = (session != 0) ? session : -1;
 			break;
 		default:	//quit with errors
-			viewListener.quit(1);
-			discard = session;
+			discard = invalid();
 			break;
 		}
 		
 		return discard;
 	}
-}
+	
+	/**
+	 * Quits with errors on an invalid message.
+	 * 
+	 * @return discard			The session id, or -1 if the client never joined
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private int invalid() throws IOException
+	{
+		if (metrics != null)
+		{
+			metrics.decodeError();
+		}
+		deliver('Q', 1);
+		return (session != 0) ? session : -1;
+	}
+	
+	/**
+	 * Reads the player's name from a join, as DataOutputStream.writeUTF
+	 * wrote it.
+	 * 
+	 * @param  data				The buffer holding the name
+	 * @param  offset			The offset of the name's length
+	 * @param  length			The number of bytes left in the message
+	 * @return name				The name, or null if it is cut short or is
+	 *							not valid modified UTF-8
+	 */
+	private static String readName(byte[] data, int offset, int length)
+	{
+		try
+		{
+			return new DataInputStream(new ByteArrayInputStream(data, offset,
+				length)).readUTF();
+		} catch (IOException e)
+		{
+			return null;	// EOFException or UTFDataFormatException
+		}
+	}
+	
+	/**
+	 * Hands a decoded message to the view listener, through the session actor
+	 * if there is one.
+	 * 
+	 * @param  message			The message code
+	 * @param  arg				The argument of the message
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void deliver(int message, int arg) throws IOException
+	{
+		deliver(message, arg, null);
+	}
+	
+	/**
+	 * Hands a decoded message with a body to the view listener, through the
+	 * session actor if there is one.
+	 * 
+	 * @param  message			The message code
+	 * @param  arg				The argument of the message
+	 * @param  body				The body of the message, owned by the listener
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void deliver(final int message, final int arg, final byte[] body)
+		throws IOException
+	{
+		if (actor == null)
+		{
+			handle(message, arg, body);
+			return;
+		}
+		
+		final long queued = governor != null ? System.nanoTime() : 0;
+		actor.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					handle(message, arg, body);
+				} catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+				if (governor != null)
+				{
+					long done = System.nanoTime();
+					governor.record(done - queued, done);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Calls the view listener for a decoded message.
+	 * 
+	 * @param  message			The message code
+	 * @param  arg				The argument of the message
+	 * @param  body				The body of the message, or null
+	 * 
+	 * @throws IOException		Thrown if an I/O error occurred
+	 */
+	private void handle(int message, int arg, byte[] body) throws IOException
+	{
+		switch (message)
+		{
+		case 'C':
+			viewListener.selectAnimal(id, arg);
+			break;
+		case 'M':
+			viewListener.selectBatch(id, arg, body);
+			break;
+		case 'R':
+			viewListener.newRound();
+			break;
+		default:
+			viewListener.quit(arg);
+			break;
+		}
+	}
+}
\ No newline at end of file
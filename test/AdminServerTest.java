@@ -0,0 +1,37 @@
+/**
+ * Tests for AdminServer: player names cannot break up the lines and
+ * columns of its replies.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class AdminServerTest
+{
+	@Test
+	public void ordinaryNamesAreWrittenAsTheyAre()
+	{
+		assertEquals("Alice", AdminServer.escape("Alice"));
+		assertEquals("Zoë the cat", AdminServer.escape("Zoë the cat"));
+	}
+	
+	@Test
+	public void separatorsInNamesArePercentEncoded()
+	{
+		assertEquals("a%09b", AdminServer.escape("a\tb"));
+		assertEquals("a%0D%0A99%09Mallory%091000", AdminServer.escape("a\r\n99\tMallory\t1000"));
+		assertEquals("100%25", AdminServer.escape("100%"));
+		assertEquals("%C2%85", AdminServer.escape("\u0085"));
+	}
+	
+	@Test
+	public void aPlayerNamedDashIsNotAnUnknownName()
+	{
+		assertEquals("%2D", AdminServer.escape("-"));
+		assertEquals("-x-", AdminServer.escape("-x-"));
+	}
+}
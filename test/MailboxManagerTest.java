@@ -0,0 +1,357 @@
+/**
+ * Tests for MailboxManager: how datagrams from clients reach proxies and
+ * sessions. The server and its clients talk over a stepped memory network,
+ * and the test thread delivers each datagram and runs the receive loop for
+ * it, then delivers the replies, so every run goes the same way. Everything
+ * runs on the test thread, so its allocation counter covers a round from
+ * the clients' sends through decoding, play and the replies.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramPacket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class MailboxManagerTest
+{
+	private static final int WARM_UP = 10000;	// rounds before measuring
+	private static final int ROUNDS = 10000;	// rounds measured
+	
+	private static final byte[][] CHOICES = {{'C', 0}, {'C', 1}, {'C', 2}};
+	private static final byte[] ROUND = {'R'};
+	
+	private MemoryTransport.Network network;
+	private MemoryTransport server;
+	private MailboxManager mailbox;
+	private SessionManager sessions;
+	private Metrics metrics;
+	
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		network = new MemoryTransport.Network(64, true);
+		server = network.open();
+		mailbox = new MailboxManager(server);
+		sessions = new SessionManager();
+		mailbox.setSessionManager(sessions);
+		metrics = new Metrics();
+		mailbox.setMetrics(metrics);
+	}
+	
+	@Test
+	public void badJoinOnStreamLeavesOtherSessionsAlone() throws IOException
+	{
+		Client a = new Client();
+		Client b = new Client();
+		a.join("Alice");
+		b.join("Bob");
+		assertEquals(1, liveSession(1).getSession());
+		
+		Client c = new Client();
+		c.join(0, "Carol");
+		long dropped = metrics.getDropped();
+		
+		c.send('X', 0, 1, 'J');			// too short to be a join
+		assertEquals(1, metrics.getDecodeErrors());
+		liveSession(1);
+		assertEquals(0, c.drain().length);
+		
+		c.send('X', 0, 1, 'R');			// the stream is gone, so this is dropped
+		assertEquals(dropped + 1, metrics.getDropped());
+		
+		a.send('C', 0);
+		b.send('C', 1);
+		assertTrue(a.received('O'), "no outcome for player 1");
+		assertTrue(b.received('O'), "no outcome for player 2");
+		assertEquals(3, metrics.getConnections());
+	}
+	
+	@Test
+	public void streamIdsPastTheLimitAreDropped() throws IOException
+	{
+		Client c = new Client();
+		c.join(0, "Carol");
+		long dropped = metrics.getDropped();
+		
+		c.send(join(ViewProxy.MAX_STREAMS, 0, "Dave"));
+		c.send(join(0xFFFF, 0, "Erin"));
+		assertEquals(dropped + 2, metrics.getDropped());
+		assertEquals(0, c.drain().length);
+		
+		c.send(join(ViewProxy.MAX_STREAMS - 1, 0, "Fred"));
+		assertEquals('I', c.drain()[0][ViewProxy.MUX_HEADER]);
+	}
+	
+	@Test
+	public void eachStreamHasItsOwnRateLimit() throws IOException
+	{
+		mailbox.setRateLimiter(new RateLimiter(1, 2));
+		Client c = new Client();
+		c.join(0, "Carol");				// one of the address's two tokens
+		c.send(join(1, 0, "Dave"));		// and the other
+		assertEquals('I', c.drain()[0][ViewProxy.MUX_HEADER]);
+		long dropped = metrics.getDropped();
+		
+		for (int i = 0; i < 2; i++)
+		{
+			c.send('X', 0, 0, 'C', 0);
+			c.send('X', 0, 1, 'C', 1);
+		}
+		assertEquals(dropped, metrics.getDropped());
+		
+		c.send('X', 0, 0, 'C', 2);		// stream 0 is over its limit
+		c.send(join(2, 0, "Erin"));		// and the address has no tokens left to open a stream
+		assertEquals(dropped + 2, metrics.getDropped());
+	}
+	
+	@Test
+	public void timeOnTheSessionActorCountsTowardOverload() throws Exception
+	{
+		final List<Runnable> held = new ArrayList<Runnable>();
+		final boolean[] holding = {false};
+		sessions.setExecutor(new Executor()
+		{
+			public void execute(Runnable task)
+			{
+				if (holding[0])
+				{
+					held.add(task);
+				} else
+					task.run();
+			}
+		});
+		OverloadGovernor governor = new OverloadGovernor(TimeUnit.MILLISECONDS.toNanos(2));
+		mailbox.setOverloadGovernor(governor);
+		Client a = new Client();
+		Client b = new Client();
+		a.join("Alice");
+		b.join("Bob");
+		
+		holding[0] = true;			// the pool falls behind
+		a.send('C', 0);
+		b.send('C', 1);
+		assertFalse(governor.isOverloaded(System.nanoTime()));
+		Thread.sleep(50);
+		holding[0] = false;
+		for (Runnable task : held)
+		{
+			task.run();
+		}
+		while (network.step())
+		{
+			// deliver the outcome
+		}
+		assertTrue(a.received('O'), "no outcome for player 1");
+		assertTrue(governor.isOverloaded(System.nanoTime()));
+		
+		Client c = new Client();
+		c.send(join(-1, 0, "Carol"));
+		c.send(join(-1, JoinCookies.read(c.last(), 1), "Carol"));
+		assertEquals('B', c.last()[0]);
+	}
+	
+	@Test
+	public void roundsThroughTheReceiveLoopAllocateNothing() throws IOException
+	{
+		Client a = new Client();
+		Client b = new Client();
+		a.join("Alice");
+		b.join("Bob");
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		
+		play(a, b, WARM_UP);
+		long before = threads.getCurrentThreadAllocatedBytes();
+		play(a, b, ROUNDS);
+		long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+		
+		// Less than a byte a round: no round allocates. What little there is
+		// comes from the JIT, which resolves a class's string constants on
+		// the thread that asks for it to be compiled.
+		assertTrue(allocated < ROUNDS,
+			allocated + " bytes allocated by " + ROUNDS + " rounds");
+		assertEquals(WARM_UP + ROUNDS, liveSession(1).describe().getPlayerScore(0)
+			+ liveSession(1).describe().getPlayerScore(1));
+	}
+	
+	/**
+	 * Plays rounds between two joined clients through the receive loop:
+	 * both choices, then a new round from the first client. Every reply is
+	 * received and thrown away.
+	 */
+	private static void play(Client a, Client b, int rounds) throws IOException
+	{
+		for (int i = 0; i < rounds; i++)
+		{
+			a.send(CHOICES[i % 3]);
+			b.send(CHOICES[(i + 1) % 3]);
+			a.send(ROUND);
+			a.discard();
+			b.discard();
+		}
+	}
+	
+	/**
+	 * Gets a session, failing if it has ended.
+	 */
+	private MouseCatElephantServerState liveSession(int id)
+	{
+		for (MouseCatElephantServerState model : sessions.getSessions())
+		{
+			if (model != null && model.getSession() == id)
+				return model;
+		}
+		return fail("session " + id + " has ended");
+	}
+	
+	/**
+	 * Builds a join, on a stream if the stream id is not negative.
+	 */
+	private static byte[] join(int stream, long cookie, String name)
+		throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		if (stream >= 0)
+		{
+			out.writeByte('X');
+			out.writeShort(stream);
+		}
+		out.writeByte('J');
+		out.writeLong(cookie);
+		out.writeUTF(name);
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Class Client is one client address on the memory network. Each send
+	 * is followed by one turn of the server's receive loop, and the replies
+	 * are delivered.
+	 */
+	private class Client
+	{
+		private MemoryTransport transport;
+		private DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+		
+		public Client() throws IOException
+		{
+			transport = network.open();
+		}
+		
+		/**
+		 * Joins with the cookie handshake, without a stream.
+		 */
+		public void join(String name) throws IOException
+		{
+			join(-1, name);
+		}
+		
+		/**
+		 * Joins with the cookie handshake, on a stream if the stream id is
+		 * not negative.
+		 */
+		public void join(int stream, String name) throws IOException
+		{
+			int header = (stream >= 0) ? ViewProxy.MUX_HEADER : 0;
+			send(MailboxManagerTest.join(stream, 0, name));
+			byte[] reply = last();
+			assertEquals('K', reply[header]);
+			send(MailboxManagerTest.join(stream, JoinCookies.read(reply, header + 1), name));
+			assertEquals('I', drain()[0][header]);
+		}
+		
+		/**
+		 * Sends a datagram made of the given bytes.
+		 */
+		public void send(int... bytes) throws IOException
+		{
+			byte[] data = new byte[bytes.length];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				data[i] = (byte) bytes[i];
+			}
+			send(data);
+		}
+		
+		/**
+		 * Sends a datagram, lets the server receive it and delivers the
+		 * replies.
+		 */
+		public void send(byte[] data) throws IOException
+		{
+			transport.send(data, 0, data.length, server.getLocalAddress());
+			network.step();
+			mailbox.receiveMessage();
+			while (network.step())
+			{
+				// until every reply has reached its client
+			}
+		}
+		
+		/**
+		 * Takes every datagram waiting for this client.
+		 */
+		public byte[][] drain() throws IOException
+		{
+			byte[][] received = new byte[0][];
+			while (transport.receive(packet, 1))
+			{
+				received = Arrays.copyOf(received, received.length + 1);
+				received[received.length - 1] = Arrays.copyOf(packet.getData(),
+					packet.getLength());
+			}
+			return received;
+		}
+		
+		/**
+		 * Throws away every datagram waiting for this client.
+		 */
+		public void discard() throws IOException
+		{
+			while (transport.receive(packet, 1))
+			{
+				// nothing to check
+			}
+		}
+		
+		/**
+		 * Takes every datagram waiting for this client and gets the last.
+		 */
+		public byte[] last() throws IOException
+		{
+			byte[][] received = drain();
+			assertTrue(received.length > 0, "nothing received");
+			return received[received.length - 1];
+		}
+		
+		/**
+		 * Takes every datagram waiting for this client and tells whether
+		 * one was the given message.
+		 */
+		public boolean received(char message) throws IOException
+		{
+			for (byte[] datagram : drain())
+			{
+				if (datagram[0] == message)
+					return true;
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * Tests for MouseCatElephantServerState: rounds played through two view
+ * proxies, whose datagrams are recorded instead of sent.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class MouseCatElephantServerStateTest
+{
+	/** Four animals: the standard three, and a fourth that defeats them all. */
+	private static final OutcomeRules FOUR = new OutcomeRules()
+	{
+		public int getAnimalCount()
+		{
+			return 4;
+		}
+		
+		public int defeats(int animal, int other)
+		{
+			if (animal == 3)
+				return 1;
+			if (other == 3)
+				return 0;
+			return new MouseCatElephantRules().defeats(animal, other);
+		}
+	};
+	
+	/** Five animals, one more than a batch can name. */
+	private static final OutcomeRules FIVE = new OutcomeRules()
+	{
+		public int getAnimalCount()
+		{
+			return 5;
+		}
+		
+		public int defeats(int animal, int other)
+		{
+			return animal > other ? 1 : 0;
+		}
+	};
+	
+	@Test
+	public void playersAreToldApartWithMoreThanThreeAnimals() throws IOException
+	{
+		MouseCatElephantServerState model = new MouseCatElephantServerState(1);
+		model.setOutcomeTable(new OutcomeTable(FOUR));
+		Player p1 = new Player(model, 0);
+		Player p2 = new Player(model, 1);
+		
+		p1.send('C', 3);
+		p2.send('C', 0);
+		assertArrayEquals(new byte[] {'O', 3, 1, 0}, p1.find('O'));
+		assertArrayEquals(new byte[] {'O', 3, 1, 0}, p2.find('O'));
+		assertArrayEquals(new byte[] {'S', 0, 1}, p2.find('S'));
+		
+		p1.send('R');
+		p1.send('C', 1);
+		p2.send('C', 3);
+		assertArrayEquals(new byte[] {'O', 3, 1, 1}, p1.find('O'));
+		assertArrayEquals(new byte[] {'S', 1, 1}, p1.find('S'));
+	}
+	
+	@Test
+	public void batchesAreResolvedOnceBothPlayersHaveSentOne() throws IOException
+	{
+		MouseCatElephantServerState model = new MouseCatElephantServerState(1);
+		Player p1 = new Player(model, 0);
+		Player p2 = new Player(model, 1);
+		
+		// mouse cat elephant mouse cat, against cat cat mouse elephant mouse
+		p1.send('M', 5, 0b00100100, 0b01);
+		assertNull(p1.find('M'));
+		p2.send('M', 5, 0b10000101, 0b00);
+		
+		// player 2, a draw, player 2, player 1, player 1
+		byte[] results = {'M', 5, 0b01100010, 0b01, 0, 2, 0, 2};
+		assertArrayEquals(results, p1.find('M'));
+		assertArrayEquals(results, p2.find('M'));
+	}
+	
+	@Test
+	public void batchesOfDifferentLengthsPlayTheShorter() throws IOException
+	{
+		MouseCatElephantServerState model = new MouseCatElephantServerState(1);
+		Player p1 = new Player(model, 0);
+		Player p2 = new Player(model, 1);
+		
+		// six cats against two elephants: only the two rounds are played
+		p2.send('M', 6, 0b01010101, 0b0101);
+		p1.send('M', 2, 0b1010);
+		byte[] results = {'M', 2, 0b0101, 0, 2, 0, 0};
+		assertArrayEquals(results, p1.find('M'));
+		assertArrayEquals(results, p2.find('M'));
+		
+		// the rest of the longer batch is dropped, not carried over
+		p1.send('M', 1, 0b00);
+		assertArrayEquals(results, p1.find('M'));
+		p2.send('M', 1, 0b01);
+		assertArrayEquals(new byte[] {'M', 1, 0b10, 0, 2, 0, 1}, p2.find('M'));
+	}
+	
+	@Test
+	public void batchesAreIgnoredWithMoreAnimalsThanTwoBitsName()
+		throws IOException
+	{
+		MouseCatElephantServerState model = new MouseCatElephantServerState(1);
+		model.setOutcomeTable(new OutcomeTable(FIVE));
+		Player p1 = new Player(model, 0);
+		Player p2 = new Player(model, 1);
+		
+		p1.send('M', 1, 0);
+		p2.send('M', 1, 1);
+		assertNull(p1.find('M'));
+		
+		p1.send('C', 4);
+		p2.send('C', 1);
+		assertArrayEquals(new byte[] {'O', 4, 1, 1}, p1.find('O'));
+	}
+	
+	/**
+	 * Class Player is one player in a session, joined through a view proxy
+	 * the way SessionManager joins players.
+	 */
+	private static class Player
+	{
+		private List<byte[]> received = new ArrayList<byte[]>();
+		private ViewProxy proxy;
+		
+		public Player(MouseCatElephantServerState model, int id) throws IOException
+		{
+			Transport transport = new Transport()
+			{
+				public void send(DatagramPacket packet)
+				{
+					send(packet.getData(), packet.getOffset(), packet.getLength(),
+						packet.getSocketAddress());
+				}
+				
+				public void send(byte[] data, int offset, int length,
+					SocketAddress address)
+				{
+					received.add(Arrays.copyOfRange(data, offset, offset + length));
+				}
+				
+				public boolean receive(DatagramPacket packet, int timeout)
+				{
+					return false;
+				}
+				
+				public SocketAddress getLocalAddress()
+				{
+					return null;
+				}
+				
+				public void close() {}
+			};
+			proxy = new ViewProxy(transport,
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), 1024 + id));
+			model.addModelListener(proxy);
+			proxy.setViewListener(model);
+			proxy.setPlayerInfo(id, null);
+			proxy.setSession(model.getSession());
+			model.join(proxy, "p" + id);
+		}
+		
+		/**
+		 * Sends the server a message made of the given bytes.
+		 */
+		public void send(int... bytes) throws IOException
+		{
+			byte[] data = new byte[bytes.length];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				data[i] = (byte) bytes[i];
+			}
+			proxy.process(data, data.length);
+		}
+		
+		/**
+		 * Finds the last message of a type received.
+		 */
+		public byte[] find(char message)
+		{
+			byte[] found = null;
+			for (byte[] datagram : received)
+			{
+				if (datagram[0] == message)
+				{
+					found = datagram;
+				}
+			}
+			return found;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Tests for OutboundRing: a producer that finds the ring full gives up
+ * after a bounded wait instead of holding its monitors until the writer
+ * frees a slot. The writer is held up in a send by the test's transport.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class OutboundRingTest
+{
+	private static final SocketAddress CLIENT =
+		new InetSocketAddress(InetAddress.getLoopbackAddress(), 1024);
+	
+	@Test
+	public void fullRingDropsAndCountsInsteadOfWaiting() throws InterruptedException
+	{
+		final CountDownLatch sending = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<Integer> sent = new LinkedBlockingQueue<Integer>();
+		OutboundRing ring = new OutboundRing(new Transport()
+		{
+			public void send(DatagramPacket packet) {}
+			public void send(byte[] data, int offset, int length, SocketAddress address)
+			{
+				sending.countDown();
+				try
+				{
+					release.await();
+				} catch (InterruptedException e) {}
+				sent.add((int) data[offset]);
+			}
+			public boolean receive(DatagramPacket packet, int timeout) { return false; }
+			public SocketAddress getLocalAddress() { return null; }
+			public void close() {}
+		}, 2);
+		Metrics metrics = new Metrics();
+		ring.setMetrics(metrics);
+		ring.start();
+		
+		assertTrue(ring.publish(new byte[] {0}, 0, 1, CLIENT));
+		assertTrue(sending.await(10, TimeUnit.SECONDS));	// the writer is stuck sending 0
+		assertTrue(ring.publish(new byte[] {1}, 0, 1, CLIENT));
+		
+		long start = System.nanoTime();		// 0 still holds its slot
+		assertFalse(ring.publish(new byte[] {2}, 0, 1, CLIENT));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+		assertEquals(1, metrics.getRepliesDropped());
+		
+		release.countDown();
+		assertEquals(0, sent.poll(10, TimeUnit.SECONDS));
+		assertEquals(1, sent.poll(10, TimeUnit.SECONDS));
+		assertTrue(ring.publish(new byte[] {3}, 0, 1, CLIENT));
+		assertEquals(3, sent.poll(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Tests for ReliableChannel: two channels talking over memory transports,
+ * with envelopes lost, sent twice or held back on the way. The test thread
+ * receives for both ends; retransmissions come from the channels' timer.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReliableChannelTest
+{
+	private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+	
+	private MemoryTransport.Network network;
+	private End a;
+	private End b;
+	
+	@BeforeEach
+	public void setUp() throws IOException
+	{
+		network = new MemoryTransport.Network(1024);
+		MemoryTransport left = network.open();
+		MemoryTransport right = network.open();
+		a = new End(left, right.getLocalAddress());
+		b = new End(right, left.getLocalAddress());
+	}
+	
+	@AfterEach
+	public void tearDown()
+	{
+		a.close();
+		b.close();
+	}
+	
+	@Test
+	public void messagesArriveInOrderDespiteReordering() throws IOException
+	{
+		for (int n = 0; n < 100; n += 2)
+		{
+			a.late.add(n);		// each pair of envelopes arrives swapped
+		}
+		
+		for (int i = 0; i < 100; i++)
+		{
+			a.send(i);
+		}
+		pumpUntil(b, 100);
+		assertDeliveredInOrder(b, 100);
+	}
+	
+	@Test
+	public void lostMessagesAreSentAgain() throws IOException
+	{
+		a.lost.addAll(Arrays.asList(0, 5, 6));
+		
+		for (int i = 0; i < 10; i++)
+		{
+			a.send(i);
+		}
+		pumpUntil(b, 10);
+		assertDeliveredInOrder(b, 10);
+		assertTrue(a.transmitted >= 13, "only " + a.transmitted + " envelopes sent");
+	}
+	
+	@Test
+	public void duplicatesAreDeliveredOnce() throws IOException
+	{
+		for (int n = 0; n < 50; n++)
+		{
+			a.doubled.add(n);
+		}
+		
+		for (int i = 0; i < 50; i++)
+		{
+			a.send(i);
+		}
+		pumpUntil(b, 50);
+		
+		// the second copies are already queued; let them in, and any resends
+		long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+		while (System.nanoTime() < until)
+		{
+			a.pump();
+			b.pump();
+		}
+		assertDeliveredInOrder(b, 50);
+	}
+	
+	@Test
+	public void sequenceNumbersWrapAround() throws IOException
+	{
+		int count = 0x10000 + 1000;
+		a.lost.addAll(Arrays.asList(0xFFFE, 0x10001));	// either side of the wrap
+		b.echo = true;		// so acknowledgements ride on messages
+		
+		for (int i = 0; i < count; i++)
+		{
+			a.send(i);
+			pumpUntil(b, i + 1);
+		}
+		pumpUntil(a, count);
+		assertDeliveredInOrder(b, count);
+		assertDeliveredInOrder(a, count);
+	}
+	
+	/**
+	 * Receives for both ends until one has been delivered a number of
+	 * messages, failing if that takes too long.
+	 */
+	private void pumpUntil(End end, int count) throws IOException
+	{
+		long deadline = System.nanoTime() + TIMEOUT;
+		while (end.delivered.size() < count)
+		{
+			if (!(a.pump() | b.pump()))
+			{
+				if (System.nanoTime() > deadline)
+					fail(end.delivered.size() + " of " + count + " messages delivered");
+				Thread.onSpinWait();
+			}
+		}
+	}
+	
+	/**
+	 * Checks that an end was delivered messages 0 to count - 1, each once
+	 * and in order.
+	 */
+	private static void assertDeliveredInOrder(End end, int count)
+	{
+		assertEquals(count, end.delivered.size());
+		for (int i = 0; i < count; i++)
+		{
+			if (end.delivered.get(i) != i)
+				fail("message " + end.delivered.get(i) + " delivered in place of " + i);
+		}
+	}
+	
+	/**
+	 * Class End is one end of a reliable channel, with the faults to inflict
+	 * on the envelopes it transmits. Faults are chosen by the number of the
+	 * transmission, counting only envelopes that carry a message, resends
+	 * included.
+	 */
+	private static class End implements ReliableChannel.Link
+	{
+		private MemoryTransport transport;
+		private SocketAddress peer;
+		private ReliableChannel channel;
+		private DatagramPacket packet = new DatagramPacket(new byte[512], 512);
+		private List<Integer> delivered = new ArrayList<Integer>();
+		private boolean echo = false;
+		
+		// Faults and transmissions, guarded by this end's monitor
+		private Set<Integer> lost = new HashSet<Integer>();
+		private Set<Integer> doubled = new HashSet<Integer>();
+		private Set<Integer> late = new HashSet<Integer>();	// sent after the next
+		private byte[] held;
+		private int transmitted = 0;
+		
+		public End(MemoryTransport transport, SocketAddress peer)
+		{
+			this.transport = transport;
+			this.peer = peer;
+			channel = new ReliableChannel(this);
+		}
+		
+		/**
+		 * Sends a message holding a number.
+		 */
+		public void send(int value) throws IOException
+		{
+			byte[] message = {(byte) (value >> 24), (byte) (value >> 16),
+				(byte) (value >> 8), (byte) value};
+			channel.send(message, 0, message.length);
+		}
+		
+		/**
+		 * Passes every envelope waiting at this end to its channel.
+		 * 
+		 * @return received			True if there was one
+		 */
+		public boolean pump() throws IOException
+		{
+			boolean received = false;
+			while (transport.getQueued() > 0 && transport.receive(packet, 1))
+			{
+				channel.receive(packet.getData(), 0, packet.getLength());
+				received = true;
+			}
+			return received;
+		}
+		
+		public synchronized void transmit(byte[] data, int offset, int length)
+			throws IOException
+		{
+			byte[] envelope = Arrays.copyOfRange(data, offset, offset + length);
+			if (envelope[0] == '@')
+			{
+				int n = transmitted++;
+				if (lost.contains(n))
+					return;
+				if (late.contains(n) && held == null)
+				{
+					held = envelope;
+					return;
+				}
+				if (doubled.contains(n))
+				{
+					put(envelope);
+				}
+			}
+			put(envelope);
+			if (held != null)
+			{
+				put(held);
+				held = null;
+			}
+		}
+		
+		public int deliver(byte[] data, int offset, int length) throws IOException
+		{
+			delivered.add((data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+				| (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF));
+			if (echo)
+			{
+				channel.send(data, offset, length);
+			}
+			return 0;
+		}
+		
+		public void close()
+		{
+			channel.close();
+			transport.close();
+		}
+		
+		private void put(byte[] envelope) throws IOException
+		{
+			transport.send(new DatagramPacket(envelope, envelope.length, peer));
+		}
+	}
+}
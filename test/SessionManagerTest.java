@@ -0,0 +1,143 @@
+/**
+ * Tests for SessionManager: pairing players into sessions, including
+ * players who arrive at the same moment on different shards, and ending
+ * sessions by ids that have come round again.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import org.junit.jupiter.api.Test;
+
+public class SessionManagerTest
+{
+	private static final int RACES = 2000;
+	
+	@Test
+	public void playersJoiningInTurnArePaired() throws IOException
+	{
+		SessionManager manager = new SessionManager();
+		for (int i = 0; i < 5; i++)
+		{
+			manager.join(proxy(i), "p" + i);
+		}
+		
+		MouseCatElephantServerState[] sessions = manager.getSessions();
+		assertEquals(3, sessions.length);
+		assertEquals(2, sessions[0].describe().getPlayers());
+		assertEquals(2, sessions[1].describe().getPlayers());
+		assertEquals(1, sessions[2].describe().getPlayers());
+	}
+	
+	@Test
+	public void playersJoiningAtOnceOnTwoShardsArePaired() throws Exception
+	{
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final SessionManager[][] races = new SessionManager[RACES][];
+		for (int i = 0; i < RACES; i++)
+		{
+			races[i] = SessionManager.createShards(2);
+		}
+		
+		Thread[] players = new Thread[2];
+		final Exception[] failure = new Exception[1];
+		for (int t = 0; t < players.length; t++)
+		{
+			final int shard = t;
+			players[t] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						for (int i = 0; i < RACES; i++)
+						{
+							barrier.await();
+							races[i][shard].join(proxy(shard), "p" + shard);
+						}
+					} catch (IOException | InterruptedException
+						| BrokenBarrierException e)
+					{
+						failure[0] = e;
+						barrier.reset();
+					}
+				}
+			};
+			players[t].start();
+		}
+		for (Thread player : players)
+		{
+			player.join();
+		}
+		if (failure[0] != null)
+			throw failure[0];
+		
+		for (int i = 0; i < RACES; i++)
+		{
+			int sessions = 0;
+			for (SessionManager shard : races[i])
+			{
+				for (MouseCatElephantServerState model : shard.getSessions())
+				{
+					if (model != null)
+					{
+						assertEquals(2, model.describe().getPlayers(),
+							"race " + i + " left a player waiting");
+						sessions++;
+					}
+				}
+			}
+			assertEquals(1, sessions, "race " + i);
+		}
+	}
+	
+	@Test
+	public void staleSessionIdDoesNotEndAnotherPlayersSession()
+		throws IOException
+	{
+		SessionManager manager = new SessionManager();
+		ViewProxy first = proxy(0);
+		manager.join(first, "p0");
+		int stale = manager.getSessions()[0].getSession();
+		manager.getSessions()[0].quit(0);
+		manager.endSession(stale, first);
+		
+		// the lone slot is reused until its generation comes round again
+		ViewProxy player;
+		int session;
+		do
+		{
+			player = proxy(1);
+			manager.join(player, "p1");
+			session = manager.getSessions()[0].getSession();
+			if (session != stale)
+			{
+				manager.getSessions()[0].quit(0);
+				manager.endSession(session, player);
+			}
+		} while (session != stale);
+		
+		manager.endSession(stale, first);
+		MouseCatElephantServerState live = manager.getSessions()[0];
+		assertNotNull(live, "a stale id ended the session in its slot");
+		assertTrue(live.hasPlayer(player));
+	}
+	
+	/**
+	 * Makes a proxy whose replies are dropped.
+	 */
+	private static ViewProxy proxy(int port)
+	{
+		return new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(InetAddress.getLoopbackAddress(), 1024 + port));
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * Tests for ViewProxy's decoder: invalid messages are turned away without
+ * harm. Allocation in a round in play is measured through the receive loop
+ * in MailboxManagerTest.
+ * 
+ * @author  Adam Warner
+ * @version 10/18/2026
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import org.junit.jupiter.api.Test;
+
+public class ViewProxyTest
+{
+	@Test
+	public void joinWithTruncatedNameIsInvalid() throws IOException
+	{
+		Metrics metrics = new Metrics();
+		ViewProxy proxy = proxy(1024, metrics);
+		byte[] join = {'J', 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xFF, (byte) 0xFF, 'a'};
+		
+		assertEquals(-1, proxy.process(join, join.length));
+		assertEquals(1, metrics.getDecodeErrors());
+	}
+	
+	@Test
+	public void joinWithMalformedNameIsInvalid() throws IOException
+	{
+		Metrics metrics = new Metrics();
+		ViewProxy proxy = proxy(1024, metrics);
+		byte[] join = {'J', 0, 0, 0, 0, 0, 0, 0, 0, 0, 2, (byte) 0xE0, 'a'};
+		
+		assertEquals(-1, proxy.process(join, join.length));
+		assertEquals(1, metrics.getDecodeErrors());
+	}
+	
+	/**
+	 * Makes a proxy whose replies are dropped, with a session manager as its
+	 * view listener, as the mailbox manager makes them.
+	 */
+	private static ViewProxy proxy(int port, Metrics metrics)
+	{
+		ViewProxy proxy = new ViewProxy(Transports.DISCARD,
+			new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		proxy.setViewListener(new SessionManager());
+		proxy.setMetrics(metrics);
+		return proxy;
+	}
+}